@@ -0,0 +1,55 @@
+// AggregateStats.java
+
+/**
+ * Count, sum, min, max and mean of the amounts in one analytics bucket.
+ * Min and max are null for an empty bucket.
+ */
+public class AggregateStats {
+    public static final AggregateStats EMPTY = new AggregateStats(0, 0, 0, 0);
+
+    private final long count;
+    private final long sum;
+    private final long min;
+    private final long max;
+
+    AggregateStats(long count, long sum, long min, long max) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public Money getSum() {
+        return Money.ofMinor(sum);
+    }
+
+    public Money getMin() {
+        return count > 0 ? Money.ofMinor(min) : null;
+    }
+
+    public Money getMax() {
+        return count > 0 ? Money.ofMinor(max) : null;
+    }
+
+    // Rounded half-up to the cent; zero for an empty bucket
+    public Money getMean() {
+        if (count == 0) {
+            return Money.ZERO;
+        }
+        long quotient = sum / count;
+        long remainder = sum % count;
+        if (Math.abs(remainder) * 2 >= count) {
+            quotient += Long.signum(sum);
+        }
+        return Money.ofMinor(quotient);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + ", sum=" + getSum() + ", min=" + getMin() + ", max=" + getMax() + ", mean=" + getMean();
+    }
+}
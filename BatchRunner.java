@@ -0,0 +1,545 @@
+// BatchRunner.java
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Headless command mode for scripts and scheduled jobs. Runs commands such
+ * as "add", "import", "report --month 2025-08", "search" or "balance"
+ * against one loaded tracker, taken from the command line or one per line
+ * from a script, and writes machine-readable records as CSV or JSON lines.
+ * Each command writes zero or more data records followed by exactly one
+ * "ok" or "error" record; a failing command does not stop the script.
+ */
+public class BatchRunner {
+    public enum Format {
+        // command,record,value,...; text values are quoted. Before the first record of each
+        // command and kind, a command,header,kind,name,... record names its value columns
+        CSV,
+        // {"command":...,"record":...,"name":value,...}
+        JSON
+    }
+
+    public static final String USAGE =
+            "Commands (options as --name value; the value in brackets may also be given bare):\n"
+            + "  add --description D --amount A --category C --type INCOME|EXPENSE [--date YYYY-MM-DD]\n"
+            + "      [--duplicates SKIP|FLAG|MERGE]\n"
+            + "  remove [--id] N\n"
+            + "  import [--file] PATH [--duplicates SKIP|FLAG|MERGE]\n"
+            + "                                CSV in the data file layout, header optional\n"
+            + "  report [--month] YYYY-MM      defaults to the current month\n"
+            + "  search [--keyword] K [--limit N]\n"
+            + "  list [--type T] [--category C] [--from D] [--to D] [--min A] [--max A] [--limit N]\n"
+            + "  balance\n"
+            + "  budget --limit A|income [--category C] [--period MONTH|YEAR]\n"
+            + "                                alerts come as records of the command that caused them\n"
+            + "  dedupe [--file] PATH [--output PATH] [--duplicates SKIP|FLAG|MERGE]\n"
+            + "                                offline pass over a CSV; rewrites it in place by default\n"
+            + "  flush                         waits until every change so far is on disk\n"
+            + "Rows matching stored ones are FLAGged (added anyway) unless --duplicates says otherwise;\n"
+            + "each match is reported as a duplicate record.\n";
+
+    private final FinanceTracker tracker;
+    private final LineWriter out;
+    private final Format format;
+    private StringBuilder line;
+    // CSV field names of the record being built, and those last announced per command and kind
+    private final StringBuilder names = new StringBuilder();
+    private final Map<String, Map<String, String>> headers = new HashMap<>();
+    private String recordCommand;
+    private String recordKind;
+    private int failures;
+    // Alerts are raised inside the command that caused them and recorded under its name
+    private String command = "?";
+    // Id of the row the last reported duplicate matched
+    private int lastOriginalId;
+
+    public BatchRunner(FinanceTracker tracker, Writer output, Format format) {
+        this.tracker = tracker;
+        this.out = new LineWriter(output);
+        this.format = format;
+        tracker.addBudgetListener(this::alert);
+        tracker.addDuplicateListener(this::duplicate);
+    }
+
+    /**
+     * Runs every line of the script as one command. Blank lines and lines
+     * starting with # are skipped; words are split on spaces, and a double-
+     * quoted word may contain spaces, with "" for a quote. Output is flushed
+     * whenever the script has nothing more ready, so a caller feeding
+     * commands one at a time sees each answer.
+     */
+    public void run(Reader script) throws IOException {
+        BufferedReader reader = script instanceof BufferedReader ? (BufferedReader) script : new BufferedReader(script);
+        String text;
+        while ((text = reader.readLine()) != null) {
+            String trimmed = text.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                try {
+                    execute(split(trimmed));
+                } catch (IllegalArgumentException e) {
+                    error("?", e.getMessage());
+                }
+            }
+            if (!reader.ready()) {
+                out.flush();
+            }
+        }
+        out.flush();
+    }
+
+    // Runs one command given as separate words, e.g. program arguments; returns false if it failed
+    public boolean execute(List<String> words) throws IOException {
+        command = words.get(0).toLowerCase();
+        try {
+            Map<String, String> options = parseOptions(command, words.subList(1, words.size()));
+            switch (command) {
+                case "add":
+                    add(options);
+                    break;
+                case "remove":
+                    remove(options);
+                    break;
+                case "import":
+                    importFile(options);
+                    break;
+                case "report":
+                    report(options);
+                    break;
+                case "search":
+                    search(options);
+                    break;
+                case "list":
+                    list(options);
+                    break;
+                case "balance":
+                    balance();
+                    break;
+                case "budget":
+                    budget(options);
+                    break;
+                case "dedupe":
+                    dedupe(options);
+                    break;
+                case "flush":
+                    tracker.flush();
+                    begin(command, "ok");
+                    end();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown command '" + command + "'");
+            }
+            return true;
+        } catch (IllegalArgumentException | DateTimeParseException | IOException e) {
+            error(command, e.getMessage());
+            return false;
+        }
+    }
+
+    public int getFailureCount() {
+        return failures;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private void add(Map<String, String> options) throws IOException {
+        String description = singleLine(options, "description");
+        String category = singleLine(options, "category");
+        Money amount = Money.parse(required(options, "amount"));
+        if (!amount.isPositive()) {
+            throw new IllegalArgumentException("Amount must be greater than zero");
+        }
+        Transaction.TransactionType type = Transaction.TransactionType.valueOf(required(options, "type").toUpperCase());
+        LocalDate date = options.containsKey("date") ? LocalDate.parse(options.get("date")) : LocalDate.now();
+
+        Transaction transaction = new Transaction(description, amount, category, type, date);
+        lastOriginalId = -1;
+        boolean added = withPolicy(options, () -> tracker.addTransaction(transaction));
+        if (!added && lastOriginalId < 0) {
+            throw new IllegalArgumentException("Transaction was not added");
+        }
+        // A skipped or merged duplicate answers with the id of the row it matched
+        begin("add", "ok");
+        number("id", added ? transaction.getId() : lastOriginalId);
+        end();
+    }
+
+    private void remove(Map<String, String> options) throws IOException {
+        int id = Integer.parseInt(required(options, "id"));
+        if (!tracker.removeTransaction(id)) {
+            throw new IllegalArgumentException("No transaction with id " + id);
+        }
+        begin("remove", "ok");
+        number("id", id);
+        end();
+    }
+
+    private void importFile(Map<String, String> options) throws IOException {
+        ImportResult result;
+        try (Reader source = Files.newBufferedReader(Paths.get(required(options, "file")), StandardCharsets.UTF_8)) {
+            result = withPolicy(options, () -> tracker.importTransactions(source, null));
+        }
+        begin("import", "ok");
+        number("imported", result.getImportedCount());
+        number("rejected", result.getRejectedCount());
+        number("duplicates", result.getDuplicateCount());
+        end();
+    }
+
+    // Leaves the tracker's own data alone; SKIP unless told otherwise
+    private void dedupe(Map<String, String> options) throws IOException {
+        File source = new File(required(options, "file"));
+        File target = options.containsKey("output") ? new File(options.get("output")) : source;
+        DuplicatePolicy policy = options.containsKey("duplicates") ? policy(options) : DuplicatePolicy.SKIP;
+        long duplicates = CsvDeduplicator.deduplicate(source, target, policy, this::duplicate);
+        begin("dedupe", "ok");
+        text("file", target.getPath());
+        number("duplicates", duplicates);
+        end();
+    }
+
+    // Month totals come from the manifest and the memoized category report, so closed months need not load
+    private void report(Map<String, String> options) throws IOException {
+        YearMonth month = options.containsKey("month") ? YearMonth.parse(options.get("month")) : YearMonth.now();
+        Money income = tracker.getMonthlyTotal(month, Transaction.TransactionType.INCOME);
+        Money expenses = tracker.getMonthlyTotal(month, Transaction.TransactionType.EXPENSE);
+
+        List<Map.Entry<String, Money>> categories = new ArrayList<>(tracker.getMonthlyExpensesByCategory(month).entrySet());
+        categories.sort(Map.Entry.<String, Money>comparingByValue().reversed());
+        for (Map.Entry<String, Money> category : categories) {
+            begin("report", "category");
+            text("category", category.getKey());
+            amount("expenses", category.getValue());
+            end();
+        }
+
+        begin("report", "ok");
+        text("month", month.toString());
+        amount("income", income);
+        amount("expenses", expenses);
+        amount("net", income.minus(expenses));
+        end();
+    }
+
+    private void search(Map<String, String> options) throws IOException {
+        String keyword = required(options, "keyword");
+        int limit = options.containsKey("limit") ? Integer.parseInt(options.get("limit")) : Integer.MAX_VALUE;
+        List<Transaction> matches = tracker.searchTransactions(keyword, TrigramIndex.MatchMode.SUBSTRING, false, 0, limit);
+        for (Transaction transaction : matches) {
+            transaction("search", transaction);
+        }
+        begin("search", "ok");
+        number("count", matches.size());
+        end();
+    }
+
+    // Newest first, streamed from the date index rather than collected
+    private void list(Map<String, String> options) throws IOException {
+        TransactionQuery query = new TransactionQuery()
+                .between(options.containsKey("from") ? LocalDate.parse(options.get("from")) : null,
+                         options.containsKey("to") ? LocalDate.parse(options.get("to")) : null)
+                .amountBetween(options.containsKey("min") ? Money.parse(options.get("min")) : null,
+                               options.containsKey("max") ? Money.parse(options.get("max")) : null);
+        if (options.containsKey("type")) {
+            query.type(Transaction.TransactionType.valueOf(options.get("type").toUpperCase()));
+        }
+        if (options.containsKey("category")) {
+            query.category(options.get("category"));
+        }
+        if (options.containsKey("limit")) {
+            query.limit(Integer.parseInt(options.get("limit")));
+        }
+
+        long count = 0;
+        Iterator<Transaction> rows = tracker.query(query).iterator();
+        while (rows.hasNext()) {
+            transaction("list", rows.next());
+            count++;
+        }
+        begin("list", "ok");
+        number("count", count);
+        end();
+    }
+
+    private void balance() throws IOException {
+        Money income = tracker.calculateTotalIncome();
+        Money expenses = tracker.calculateTotalExpenses();
+        begin("balance", "ok");
+        amount("income", income);
+        amount("expenses", expenses);
+        amount("balance", income.minus(expenses));
+        end();
+    }
+
+    private void budget(Map<String, String> options) throws IOException {
+        BudgetRule.Period period = options.containsKey("period")
+                                   ? BudgetRule.Period.valueOf(options.get("period").toUpperCase())
+                                   : BudgetRule.Period.MONTH;
+        String limit = required(options, "limit");
+        BudgetRule rule = limit.equalsIgnoreCase("income")
+                          ? BudgetRule.spendingOverIncome(period)
+                          : BudgetRule.limit(options.get("category"), period, Money.parse(limit));
+        tracker.addBudgetRule(rule);
+        begin("budget", "ok");
+        text("rule", rule.getName());
+        end();
+    }
+
+    private interface TrackerCall<T> {
+        T call() throws IOException;
+    }
+
+    // Runs the call under the --duplicates policy, if given, and then restores the tracker's own
+    private <T> T withPolicy(Map<String, String> options, TrackerCall<T> call) throws IOException {
+        if (!options.containsKey("duplicates")) {
+            return call.call();
+        }
+        DuplicatePolicy previous = tracker.getDuplicatePolicy();
+        tracker.setDuplicatePolicy(policy(options));
+        try {
+            return call.call();
+        } finally {
+            tracker.setDuplicatePolicy(previous);
+        }
+    }
+
+    // --- Parsing ---
+
+    private static DuplicatePolicy policy(Map<String, String> options) {
+        return DuplicatePolicy.valueOf(options.get("duplicates").toUpperCase());
+    }
+
+    // Bare words fill the command's main option, so "report 2025-08" means "report --month 2025-08"
+    private static Map<String, String> parseOptions(String command, List<String> words) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            if (word.startsWith("--")) {
+                if (i + 1 == words.size()) {
+                    throw new IllegalArgumentException("Missing value for " + word);
+                }
+                options.put(word.substring(2).toLowerCase(), words.get(++i));
+            } else {
+                String main = mainOption(command);
+                if (main == null || options.putIfAbsent(main, word) != null) {
+                    throw new IllegalArgumentException("Unexpected argument '" + word + "'");
+                }
+            }
+        }
+        return options;
+    }
+
+    private static String mainOption(String command) {
+        switch (command) {
+            case "remove":
+                return "id";
+            case "import":
+            case "dedupe":
+                return "file";
+            case "report":
+                return "month";
+            case "search":
+                return "keyword";
+            default:
+                return null;
+        }
+    }
+
+    private static String required(Map<String, String> options, String name) {
+        String value = options.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing --" + name);
+        }
+        return value;
+    }
+
+    // Stored text must fit on one journal line, or the row would be acknowledged and then lost on replay
+    private static String singleLine(Map<String, String> options, String name) {
+        String value = required(options, name);
+        if (!Transaction.isSingleLine(value)) {
+            throw new IllegalArgumentException("--" + name + " must not contain line breaks");
+        }
+        return value;
+    }
+
+    // Splits a script line into words; see run() for the quoting rules
+    static List<String> split(String text) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        boolean quoted = false;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    word.append(c);
+                } else if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    word.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+                inWord = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inWord) {
+                    words.add(word.toString());
+                    word.setLength(0);
+                    inWord = false;
+                }
+            } else {
+                word.append(c);
+                inWord = true;
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unclosed quote");
+        }
+        if (inWord) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    // --- Output ---
+
+    private void error(String command, String message) throws IOException {
+        failures++;
+        begin(command, "error");
+        text("message", message != null ? message : "Failed");
+        end();
+    }
+
+    // Listeners cannot throw checked exceptions; a failed write shows up again on the next flush
+    private void alert(BudgetAlert alert) {
+        begin(command, "alert");
+        text("rule", alert.getRule().getName());
+        text("period", alert.getPeriod());
+        amount("spent", alert.getSpent());
+        amount("limit", alert.getRule().getLimit());
+        try {
+            end();
+        } catch (IOException e) {
+            System.err.println("Error writing output: " + e.getMessage());
+        }
+    }
+
+    // The incoming copy's content, the id of the row it matched and what was done with it
+    private void duplicate(Transaction duplicate, Transaction original, DuplicatePolicy policy) {
+        lastOriginalId = original.getId();
+        begin(command, "duplicate");
+        number("original", original.getId());
+        text("action", policy.name());
+        text("description", duplicate.getDescription());
+        amount("amount", duplicate.getAmount());
+        text("category", duplicate.getCategory());
+        text("type", duplicate.getType().name());
+        field("date");
+        quote();
+        TransactionFormat.appendDate(line, (int) duplicate.getDate().toEpochDay());
+        quote();
+        try {
+            end();
+        } catch (IOException e) {
+            System.err.println("Error writing output: " + e.getMessage());
+        }
+    }
+
+    private void transaction(String command, Transaction transaction) throws IOException {
+        begin(command, "transaction");
+        number("id", transaction.getId());
+        text("description", transaction.getDescription());
+        amount("amount", transaction.getAmount());
+        text("category", transaction.getCategory());
+        text("type", transaction.getType().name());
+        field("date");
+        quote();
+        TransactionFormat.appendDate(line, (int) transaction.getDate().toEpochDay());
+        quote();
+        end();
+    }
+
+    private void begin(String command, String record) {
+        line = out.line();
+        names.setLength(0);
+        recordCommand = command;
+        recordKind = record;
+        if (format == Format.JSON) {
+            line.append("{\"command\":");
+            TransactionFormat.appendJson(line, command);
+            line.append(",\"record\":");
+            TransactionFormat.appendJson(line, record);
+        } else {
+            line.append(command).append(',').append(record);
+        }
+    }
+
+    private void field(String name) {
+        if (format == Format.JSON) {
+            line.append(",\"").append(name).append("\":");
+        } else {
+            line.append(',');
+            names.append(',').append(name);
+        }
+    }
+
+    // Dates are quoted in both formats: a JSON string, and a CSV field like any other text
+    private void quote() {
+        line.append('"');
+    }
+
+    private void text(String name, String value) {
+        field(name);
+        if (format == Format.JSON) {
+            TransactionFormat.appendJson(line, value);
+        } else {
+            TransactionFormat.appendQuoted(line, value);
+        }
+    }
+
+    private void number(String name, long value) {
+        field(name);
+        line.append(value);
+    }
+
+    // Exact decimal, e.g. 12.05; a valid JSON number
+    private void amount(String name, Money value) {
+        field(name);
+        TransactionFormat.appendAmount(line, value.getMinorUnits());
+    }
+
+    private void end() throws IOException {
+        if (format == Format.JSON) {
+            line.append('}');
+        } else {
+            writeHeaderIfNew();
+        }
+        out.endLine();
+    }
+
+    // Only the first record of a shape pays for the copy of its data line
+    private void writeHeaderIfNew() throws IOException {
+        Map<String, String> kinds = headers.computeIfAbsent(recordCommand, c -> new HashMap<>());
+        String announced = kinds.get(recordKind);
+        if (announced != null && announced.contentEquals(names)) {
+            return;
+        }
+        String data = line.toString();
+        kinds.put(recordKind, names.toString());
+        out.line().append(recordCommand).append(",header,").append(recordKind).append(names);
+        out.endLine();
+        line = out.line().append(data);
+    }
+}
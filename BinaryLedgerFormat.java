@@ -0,0 +1,328 @@
+// BinaryLedgerFormat.java
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Native binary snapshot of the ledger.
+ *
+ * Layout (little-endian):
+ *   header:   magic "PFTL", version, row count, block count, CRC of the preceding 16 bytes
+ *   category: payload length, CRC, then varint count and varint-length-prefixed UTF-8 names
+ *   blocks:   row count, payload length, CRC, then a payload of up to BLOCK_ROWS rows:
+ *             ids section length, zigzag varint id deltas,
+ *             fixed-width columns int epoch days, long amounts in cents, byte types,
+ *             int category indexes, and finally varint-length-prefixed UTF-8 descriptions
+ *
+ * Blocks are read straight out of a memory-mapped file with absolute
+ * ByteBuffer access; every block's CRC is checked before it is used.
+ */
+public class BinaryLedgerFormat {
+    public static final int MAGIC = 0x4C544650;   // "PFTL" in little-endian byte order
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final int BLOCK_HEADER_SIZE = 12;
+    private static final int BLOCK_ROWS = 65536;
+    private static final int TYPE_COUNT = Transaction.TransactionType.values().length;
+
+    /**
+     * Receives decoded rows.
+     */
+    public interface RowSink {
+        void accept(int id, long amount, int epochDay, byte type, String category, String description);
+    }
+
+    public static void write(TransactionStore store, File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            int rowCount = store.size();
+            int blockCount = (rowCount + BLOCK_ROWS - 1) / BLOCK_ROWS;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(rowCount).putInt(blockCount);
+            header.putInt(crc(header, 0, 16));
+            header.flip();
+            writeFully(channel, header);
+
+            // Categories are renumbered densely so freed dictionary codes are not written
+            StringDictionary dictionary = store.getCategoryDictionary();
+            int[] categoryIndex = new int[dictionary.codeLimit()];
+            Arrays.fill(categoryIndex, -1);
+            GrowableBuffer names = new GrowableBuffer();
+            int categoryCount = 0;
+            for (int code = 0; code < categoryIndex.length; code++) {
+                String name = dictionary.valueOf(code);
+                if (name != null) {
+                    categoryIndex[code] = categoryCount++;
+                    names.putString(name);
+                }
+            }
+            GrowableBuffer categoryBlock = new GrowableBuffer();
+            categoryBlock.putVarint(categoryCount);
+            categoryBlock.putBytes(names.flipped());
+            writeBlock(channel, -1, categoryBlock.flipped());
+
+            int slot = 0;
+            int[] slots = new int[Math.min(BLOCK_ROWS, Math.max(rowCount, 1))];
+            for (int block = 0; block < blockCount; block++) {
+                int count = 0;
+                while (count < slots.length && slot < store.slotCount()) {
+                    if (store.isLive(slot)) {
+                        slots[count++] = slot;
+                    }
+                    slot++;
+                }
+                writeBlock(channel, count, encodeRows(store, slots, count, categoryIndex));
+            }
+            channel.force(true);
+        }
+    }
+
+    private static ByteBuffer encodeRows(TransactionStore store, int[] slots, int count, int[] categoryIndex) {
+        GrowableBuffer ids = new GrowableBuffer();
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int id = store.idAt(slots[i]);
+            ids.putVarint(zigzag(id - previous));
+            previous = id;
+        }
+        ByteBuffer idBytes = ids.flipped();
+
+        GrowableBuffer payload = new GrowableBuffer();
+        payload.ensure(4 + idBytes.remaining() + count * 17);
+        payload.buffer.putInt(idBytes.remaining());
+        payload.putBytes(idBytes);
+        for (int i = 0; i < count; i++) {
+            payload.buffer.putInt(store.epochDayAt(slots[i]));
+        }
+        for (int i = 0; i < count; i++) {
+            payload.buffer.putLong(store.amountAt(slots[i]));
+        }
+        for (int i = 0; i < count; i++) {
+            payload.buffer.put(store.typeCodeAt(slots[i]));
+        }
+        for (int i = 0; i < count; i++) {
+            payload.buffer.putInt(categoryIndex[store.categoryCodeAt(slots[i])]);
+        }
+        for (int i = 0; i < count; i++) {
+            payload.putString(store.descriptionAt(slots[i]));
+        }
+        return payload.flipped();
+    }
+
+    // rowCount of -1 marks the category block, which has no row count field
+    private static void writeBlock(FileChannel channel, int rowCount, ByteBuffer payload) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (rowCount >= 0) {
+            header.putInt(rowCount);
+        }
+        header.putInt(payload.remaining());
+        header.putInt(crc(payload, payload.position(), payload.remaining()));
+        header.flip();
+        writeFully(channel, header);
+        writeFully(channel, payload);
+    }
+
+    /**
+     * Decodes every row into the sink and returns the row count.
+     * Throws IOException if the file is not a ledger, has an unknown version
+     * or fails a checksum.
+     */
+    public static int read(File file, RowSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = map(channel, 0, HEADER_SIZE, size);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a ledger file: " + file);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported ledger version " + header.getInt(4));
+            }
+            if (header.getInt(16) != crc(header, 0, 16)) {
+                throw new IOException("Ledger header checksum mismatch");
+            }
+            int rowCount = header.getInt(8);
+            int blockCount = header.getInt(12);
+            long position = HEADER_SIZE;
+
+            ByteBuffer categoryHeader = map(channel, position, 8, size);
+            int categoryLength = categoryHeader.getInt(0);
+            ByteBuffer categoryBlock = checked(map(channel, position + 8, categoryLength, size), categoryHeader.getInt(4));
+            position += 8 + categoryLength;
+            Decoder categoryDecoder = new Decoder(categoryBlock, 0);
+            String[] categories = new String[categoryDecoder.varint()];
+            for (int i = 0; i < categories.length; i++) {
+                categories[i] = categoryDecoder.string();
+            }
+
+            int decoded = 0;
+            for (int block = 0; block < blockCount; block++) {
+                ByteBuffer blockHeader = map(channel, position, BLOCK_HEADER_SIZE, size);
+                int count = blockHeader.getInt(0);
+                int length = blockHeader.getInt(4);
+                ByteBuffer payload = checked(map(channel, position + BLOCK_HEADER_SIZE, length, size), blockHeader.getInt(8));
+                position += BLOCK_HEADER_SIZE + length;
+                decodeRows(payload, count, categories, sink);
+                decoded += count;
+            }
+            if (decoded != rowCount) {
+                throw new IOException("Ledger row count mismatch: header says " + rowCount + ", blocks hold " + decoded);
+            }
+            return decoded;
+        }
+    }
+
+    private static void decodeRows(ByteBuffer payload, int count, String[] categories, RowSink sink) throws IOException {
+        int idsLength = payload.getInt(0);
+        int datesOffset = 4 + idsLength;
+        int amountsOffset = datesOffset + count * 4;
+        int typesOffset = amountsOffset + count * 8;
+        int categoriesOffset = typesOffset + count;
+        int descriptionsOffset = categoriesOffset + count * 4;
+
+        Decoder ids = new Decoder(payload, 4);
+        Decoder descriptions = new Decoder(payload, descriptionsOffset);
+        int id = 0;
+        try {
+            for (int i = 0; i < count; i++) {
+                id += unzigzag(ids.varint());
+                byte type = payload.get(typesOffset + i);
+                if (type < 0 || type >= TYPE_COUNT) {
+                    throw new IOException("Corrupt ledger block: unknown type code " + type);
+                }
+                sink.accept(id,
+                            payload.getLong(amountsOffset + i * 8),
+                            payload.getInt(datesOffset + i * 4),
+                            type,
+                            categories[payload.getInt(categoriesOffset + i * 4)],
+                            descriptions.string());
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt ledger block", e);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, int length, long fileSize) throws IOException {
+        if (length < 0 || position + length > fileSize) {
+            throw new IOException("Truncated ledger file");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer checked(ByteBuffer block, int expectedCrc) throws IOException {
+        if (crc(block, 0, block.limit()) != expectedCrc) {
+            throw new IOException("Ledger block checksum mismatch");
+        }
+        return block;
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + length).position(offset);
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        TrackerMetrics.get().bytesWritten(buffer.remaining());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Sequential reader of varints and strings over absolute buffer positions.
+     */
+    private static class Decoder {
+        private final ByteBuffer buffer;
+        private int position;
+        private byte[] scratch = new byte[64];
+
+        Decoder(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int varint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IndexOutOfBoundsException("Malformed varint");
+        }
+
+        String string() {
+            int length = varint();
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(position, scratch, 0, length);
+            position += length;
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Heap buffer that grows as it is written.
+     */
+    private static class GrowableBuffer {
+        ByteBuffer buffer = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+
+        void ensure(int extra) {
+            if (buffer.remaining() < extra) {
+                int capacity = Math.max(buffer.capacity() * 2, buffer.position() + extra);
+                ByteBuffer larger = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+
+        void putVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        void putString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putVarint(bytes.length);
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+
+        void putBytes(ByteBuffer bytes) {
+            ensure(bytes.remaining());
+            buffer.put(bytes);
+        }
+
+        ByteBuffer flipped() {
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
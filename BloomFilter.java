@@ -0,0 +1,43 @@
+// BloomFilter.java
+
+/**
+ * Blocked Bloom filter over 64-bit hashes. All of a key's probe bits fall
+ * in one 64-bit word, so a lookup costs a single memory access, and at
+ * 16 bits per expected key about one absent key in 200 is reported as
+ * possibly present. Keys cannot be removed; build a new filter instead.
+ */
+public class BloomFilter {
+    private static final int BITS_PER_KEY = 16;
+    private static final int PROBES = 4;
+
+    private final long[] words;
+
+    public BloomFilter(long expectedKeys) {
+        long bits = Math.max(expectedKeys, 1) * BITS_PER_KEY;
+        this.words = new long[(int) Math.min((bits + 63) / 64, Integer.MAX_VALUE - 8)];
+    }
+
+    public void add(long hash) {
+        words[wordOf(hash)] |= maskOf(hash);
+    }
+
+    // False means the key was never added; true may be a false positive
+    public boolean mightContain(long hash) {
+        long mask = maskOf(hash);
+        return (words[wordOf(hash)] & mask) == mask;
+    }
+
+    // High half picks the word, without needing a power-of-two size
+    private int wordOf(long hash) {
+        return (int) (((hash >>> 32) * words.length) >>> 32);
+    }
+
+    // Low half supplies the bit positions, six bits per probe
+    private static long maskOf(long hash) {
+        long mask = 0;
+        for (int probe = 0; probe < PROBES; probe++) {
+            mask |= 1L << (hash >>> (probe * 6));
+        }
+        return mask;
+    }
+}
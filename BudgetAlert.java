@@ -0,0 +1,40 @@
+// BudgetAlert.java
+
+/**
+ * Raised when a change pushes a period's spending past a budget rule's
+ * limit. For a rule against income, spent is expenses minus income.
+ */
+public class BudgetAlert {
+    private final BudgetRule rule;
+    private final String period;
+    private final long spent;
+
+    public BudgetAlert(BudgetRule rule, String period, long spent) {
+        this.rule = rule;
+        this.period = period;
+        this.spent = spent;
+    }
+
+    public BudgetRule getRule() {
+        return rule;
+    }
+
+    // e.g. "2025-08" for a monthly rule, "2025" for a yearly one
+    public String getPeriod() {
+        return period;
+    }
+
+    public Money getSpent() {
+        return Money.ofMinor(spent);
+    }
+
+    public Money getOverspend() {
+        return Money.ofMinor(spent - rule.limitMinor());
+    }
+
+    @Override
+    public String toString() {
+        return rule.getName() + " exceeded for " + period + ": spent $" + getSpent()
+               + (rule.isAgainstIncome() ? " more than earned" : " of $" + rule.getLimit());
+    }
+}
@@ -0,0 +1,274 @@
+// BudgetEngine.java
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Evaluates budget rules incrementally. Rules watching the same measure
+ * (one category's expenses, all expenses, or expenses minus income) over the
+ * same kind of period share a watch holding a running total per period and
+ * the rules sorted by limit. A row change adds its amount to the few watches
+ * it affects and fires just the rules whose limit the new total has crossed,
+ * so its cost does not grow with the number of rules. A period's total is
+ * seeded from the ledger the first time a change lands in it.
+ * That first change is also a rule's first look at the period: every rule
+ * the resulting total is over fires then, even if the period was already
+ * over before the change, and so does a rule added later at the next change
+ * in each period. From then on a rule fires only when its limit is crossed.
+ *
+ * Changes and rule updates run under the tracker's write lock; alerts are
+ * queued and delivered by the mutating thread once it has released the lock.
+ */
+class BudgetEngine {
+    // Where the first total of a period comes from
+    interface Totals {
+        // Expense total in minor units for the category, or every category if null
+        long expenses(String category, int fromMonthKey, int toMonthKey);
+
+        long income(int fromMonthKey, int toMonthKey);
+    }
+
+    private static final class Watch {
+        final String category;
+        final BudgetRule.Period period;
+        final boolean againstIncome;
+        BudgetRule[] rules = new BudgetRule[0];
+        // Bumped by each added rule; a rule is new to a period evaluated before its generation
+        int generation;
+        final Map<BudgetRule, Integer> addedAt = new IdentityHashMap<>();
+        // Running total per period index, and the generation the period was last evaluated at
+        final Map<Integer, long[]> totals = new HashMap<>();
+        // Most changes land in the current period, so its total is kept at hand
+        int lastIndex;
+        long[] lastTotal;
+
+        Watch(String category, BudgetRule.Period period, boolean againstIncome) {
+            this.category = category;
+            this.period = period;
+            this.againstIncome = againstIncome;
+        }
+    }
+
+    private static final BudgetRule.Period[] PERIODS = BudgetRule.Period.values();
+
+    private final Totals source;
+    // Per category, one watch per period kind (null until a rule needs it)
+    private final Map<String, Watch[]> byCategory = new HashMap<>();
+    private final Watch[] allExpenses = new Watch[PERIODS.length];
+    private final Watch[] againstIncome = new Watch[PERIODS.length];
+    private int ruleCount;
+    private final List<BudgetListener> listeners = new CopyOnWriteArrayList<>();
+    private final Queue<BudgetAlert> pending = new ConcurrentLinkedQueue<>();
+
+    BudgetEngine(Totals source) {
+        this.source = source;
+    }
+
+    void addListener(BudgetListener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(BudgetListener listener) {
+        listeners.remove(listener);
+    }
+
+    void addRule(BudgetRule rule) {
+        Watch watch = watchFor(rule, true);
+        BudgetRule[] rules = Arrays.copyOf(watch.rules, watch.rules.length + 1);
+        rules[rules.length - 1] = rule;
+        Arrays.sort(rules, Comparator.comparingLong(BudgetRule::limitMinor));
+        watch.rules = rules;
+        watch.addedAt.put(rule, ++watch.generation);
+        ruleCount++;
+    }
+
+    boolean removeRule(BudgetRule rule) {
+        Watch watch = watchFor(rule, false);
+        if (watch == null) {
+            return false;
+        }
+        for (int i = 0; i < watch.rules.length; i++) {
+            if (watch.rules[i] == rule) {
+                BudgetRule[] rules = new BudgetRule[watch.rules.length - 1];
+                System.arraycopy(watch.rules, 0, rules, 0, i);
+                System.arraycopy(watch.rules, i + 1, rules, i, rules.length - i);
+                watch.rules = rules;
+                watch.addedAt.remove(rule);
+                if (rules.length == 0) {
+                    // Totals are only kept current while a rule watches them
+                    watch.totals.clear();
+                    watch.lastTotal = null;
+                }
+                ruleCount--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    List<BudgetRule> getRules() {
+        List<BudgetRule> rules = new ArrayList<>();
+        for (Watch[] watches : byCategory.values()) {
+            addRules(watches, rules);
+        }
+        addRules(allExpenses, rules);
+        addRules(againstIncome, rules);
+        return rules;
+    }
+
+    /**
+     * Applies one row entering (sign 1) or leaving (sign -1) the ledger.
+     * Call before the store changes, so a period seeded here does not
+     * already count the row.
+     */
+    void rowChanged(String category, Transaction.TransactionType type, int epochDay, long amount, int sign) {
+        if (ruleCount == 0) {
+            return;
+        }
+        long delta = sign * amount;
+        int monthKey = MonthlyAggregateIndex.monthKeyOfEpochDay(epochDay);
+        if (type == Transaction.TransactionType.EXPENSE) {
+            Watch[] watches = byCategory.get(category);
+            if (watches != null) {
+                apply(watches, monthKey, delta);
+            }
+            apply(allExpenses, monthKey, delta);
+            apply(againstIncome, monthKey, delta);
+        } else {
+            apply(againstIncome, monthKey, -delta);
+        }
+    }
+
+    // An edit of one row's category or amount, applied as a single change to each total it touches
+    void rowEdited(Transaction.TransactionType type, int epochDay, String oldCategory, long oldAmount,
+                   String newCategory, long newAmount) {
+        if (ruleCount == 0) {
+            return;
+        }
+        long delta = newAmount - oldAmount;
+        int monthKey = MonthlyAggregateIndex.monthKeyOfEpochDay(epochDay);
+        if (type == Transaction.TransactionType.EXPENSE) {
+            Watch[] oldWatches = byCategory.get(oldCategory);
+            if (oldCategory.equals(newCategory)) {
+                if (oldWatches != null) {
+                    apply(oldWatches, monthKey, delta);
+                }
+            } else {
+                Watch[] newWatches = byCategory.get(newCategory);
+                if (oldWatches != null) {
+                    apply(oldWatches, monthKey, -oldAmount);
+                }
+                if (newWatches != null) {
+                    apply(newWatches, monthKey, newAmount);
+                }
+            }
+            apply(allExpenses, monthKey, delta);
+            apply(againstIncome, monthKey, delta);
+        } else {
+            apply(againstIncome, monthKey, -delta);
+        }
+    }
+
+    // Hands queued alerts to the listeners; called by mutating threads with no lock held
+    void deliverAlerts() {
+        BudgetAlert alert;
+        while ((alert = pending.poll()) != null) {
+            for (BudgetListener listener : listeners) {
+                listener.budgetExceeded(alert);
+            }
+        }
+    }
+
+    private void apply(Watch[] watches, int monthKey, long delta) {
+        for (Watch watch : watches) {
+            if (watch == null || watch.rules.length == 0) {
+                continue;
+            }
+            int index = watch.period.indexOf(monthKey);
+            long[] total = watch.lastTotal != null && watch.lastIndex == index ? watch.lastTotal : watch.totals.get(index);
+            if (total == null) {
+                total = new long[] {seed(watch, index), 0};
+                watch.totals.put(index, total);
+            }
+            watch.lastIndex = index;
+            watch.lastTotal = total;
+            long before = total[0];
+            total[0] += delta;
+            if (total[1] != watch.generation) {
+                fireFirstLook(watch, index, before, total);
+            } else if (total[0] > before) {
+                fireCrossed(watch, index, before, total[0]);
+            }
+        }
+    }
+
+    // Rules new to the period fire if the total is over them; the others only if it just crossed them
+    private void fireFirstLook(Watch watch, int index, long before, long[] total) {
+        long after = total[0];
+        for (BudgetRule rule : watch.rules) {
+            long limit = rule.limitMinor();
+            boolean isNew = watch.addedAt.get(rule) > total[1];
+            if (isNew ? limit < after : before <= limit && limit < after) {
+                pending.add(new BudgetAlert(rule, watch.period.label(index), after));
+            }
+        }
+        total[1] = watch.generation;
+    }
+
+    // Rules whose limit lies in [before, after): the total was within them and now is over
+    private void fireCrossed(Watch watch, int index, long before, long after) {
+        BudgetRule[] rules = watch.rules;
+        int low = 0;
+        int high = rules.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (rules[middle].limitMinor() < before) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < rules.length && rules[i].limitMinor() < after; i++) {
+            pending.add(new BudgetAlert(rules[i], watch.period.label(index), after));
+        }
+    }
+
+    private long seed(Watch watch, int index) {
+        int from = watch.period.firstMonthKey(index);
+        int to = watch.period.lastMonthKey(index);
+        long expenses = source.expenses(watch.category, from, to);
+        return watch.againstIncome ? expenses - source.income(from, to) : expenses;
+    }
+
+    private Watch watchFor(BudgetRule rule, boolean create) {
+        Watch[] watches;
+        if (rule.isAgainstIncome()) {
+            watches = againstIncome;
+        } else if (rule.getCategory() == null) {
+            watches = allExpenses;
+        } else {
+            watches = byCategory.get(rule.getCategory());
+            if (watches == null) {
+                if (!create) {
+                    return null;
+                }
+                watches = new Watch[PERIODS.length];
+                byCategory.put(rule.getCategory(), watches);
+            }
+        }
+
+        int slot = rule.getPeriod().ordinal();
+        if (watches[slot] == null && create) {
+            watches[slot] = new Watch(rule.getCategory(), rule.getPeriod(), rule.isAgainstIncome());
+        }
+        return watches[slot];
+    }
+
+    private static void addRules(Watch[] watches, List<BudgetRule> rules) {
+        for (Watch watch : watches) {
+            if (watch != null) {
+                rules.addAll(Arrays.asList(watch.rules));
+            }
+        }
+    }
+}
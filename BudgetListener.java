@@ -0,0 +1,10 @@
+// BudgetListener.java
+
+/**
+ * Notified when a budget rule is exceeded. Called on the thread that made
+ * the change, after the tracker has released its lock, so it may read the
+ * tracker; it should return quickly as the mutating call waits for it.
+ */
+public interface BudgetListener {
+    void budgetExceeded(BudgetAlert alert);
+}
@@ -0,0 +1,93 @@
+// BudgetRule.java
+import java.time.Year;
+import java.time.YearMonth;
+
+/**
+ * A spending limit for one category, or all of them, per calendar month or
+ * year; or the rule that a period's expenses must not exceed its income.
+ * Immutable; register with FinanceTracker.addBudgetRule().
+ */
+public final class BudgetRule {
+    public enum Period {
+        MONTH,
+        YEAR;
+
+        // Month key or year number of the period holding the month
+        int indexOf(int monthKey) {
+            return this == MONTH ? monthKey : Math.floorDiv(monthKey, 12);
+        }
+
+        int firstMonthKey(int index) {
+            return this == MONTH ? index : MonthlyAggregateIndex.monthKey(YearMonth.of(index, 1));
+        }
+
+        int lastMonthKey(int index) {
+            return this == MONTH ? index : MonthlyAggregateIndex.monthKey(YearMonth.of(index, 12));
+        }
+
+        // e.g. "2025-08" or "2025"
+        String label(int index) {
+            return this == MONTH ? MonthlyAggregateIndex.toYearMonth(index).toString() : Year.of(index).toString();
+        }
+    }
+
+    private final String name;
+    private final String category;
+    private final Period period;
+    private final long limit;
+    private final boolean againstIncome;
+
+    private BudgetRule(String name, String category, Period period, long limit, boolean againstIncome) {
+        this.name = name;
+        this.category = category;
+        this.period = period;
+        this.limit = limit;
+        this.againstIncome = againstIncome;
+    }
+
+    // Expenses in the category (null for every category) may total at most limit per period
+    public static BudgetRule limit(String category, Period period, Money limit) {
+        if (limit.signum() < 0) {
+            throw new IllegalArgumentException("Budget limit cannot be negative");
+        }
+        String name = (category != null ? category : "All expenses") + " " + period.name().toLowerCase()
+                      + "ly budget of " + limit;
+        return new BudgetRule(name, category, period, limit.getMinorUnits(), false);
+    }
+
+    // Expenses may not exceed income within a period
+    public static BudgetRule spendingOverIncome(Period period) {
+        return new BudgetRule("Spending over " + period.name().toLowerCase() + "ly income", null, period, 0, true);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Null when the rule covers every category
+    public String getCategory() {
+        return category;
+    }
+
+    public Period getPeriod() {
+        return period;
+    }
+
+    public Money getLimit() {
+        return Money.ofMinor(limit);
+    }
+
+    // Whether the rule measures expenses minus income rather than expenses alone
+    public boolean isAgainstIncome() {
+        return againstIncome;
+    }
+
+    long limitMinor() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
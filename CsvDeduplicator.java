@@ -0,0 +1,183 @@
+// CsvDeduplicator.java
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Offline duplicate pass over a CSV in the data file layout, such as a
+ * transactions.csv awaiting migration or an export, using the same content
+ * fingerprints as the tracker. The file is streamed rather than loaded: a
+ * first pass runs every fingerprint through a Bloom filter and keeps only
+ * those it has seen before, and later passes compare just those candidate
+ * rows exactly. Memory therefore follows the number of duplicates, not the
+ * size of the file.
+ */
+public final class CsvDeduplicator {
+    // Rows are rarely shorter than this, so sizing the filter by it overestimates the row count
+    private static final int MIN_ROW_BYTES = 32;
+
+    // Rows sharing one fingerprint; normally exactly one group per candidate fingerprint
+    private static final class Group {
+        final Transaction first;
+        final String description;
+        String latestDescription;
+
+        Group(Transaction first) {
+            this.first = first;
+            this.description = FingerprintIndex.normalize(first.getDescription());
+            this.latestDescription = first.getDescription();
+        }
+
+        boolean matches(Transaction row) {
+            return row.getDate().equals(first.getDate())
+                   && row.getAmount().getMinorUnits() == first.getAmount().getMinorUnits()
+                   && row.getType() == first.getType() && row.getCategory().equals(first.getCategory())
+                   && FingerprintIndex.normalize(row.getDescription()).equals(description);
+        }
+    }
+
+    private CsvDeduplicator() {
+    }
+
+    /**
+     * Writes source to target with every later copy of a row handled by the
+     * policy: dropped (SKIP), kept (FLAG), or dropped with the first copy
+     * taking the last copy's description (MERGE). target may be source
+     * itself; it is replaced only once the new file is complete. Unreadable
+     * rows are passed through unchanged. The listener, if any, hears about
+     * each copy; returns how many there were.
+     */
+    public static long deduplicate(File source, File target, DuplicatePolicy policy,
+                                   DuplicateListener listener) throws IOException {
+        Set<Long> candidates = findCandidates(source);
+        // Merging rewrites a group's first row, which is only known once the whole file has been read
+        Map<Long, Group> merged = policy == DuplicatePolicy.MERGE ? groupCandidates(source, candidates) : null;
+
+        File temporary = new File(target.getPath() + ".tmp");
+        Map<Long, Group> groups = new HashMap<>();
+        long duplicates = 0;
+        try (BufferedReader reader = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8);
+             Writer output = Files.newBufferedWriter(temporary.toPath(), StandardCharsets.UTF_8)) {
+            LineWriter writer = new LineWriter(output);
+            boolean first = true;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                boolean header = first && line.startsWith("id,");
+                first = false;
+                Transaction row = header || line.isBlank() ? null : Transaction.fromCSV(line);
+                Long fingerprint = row != null ? fingerprintOf(row) : null;
+                if (fingerprint == null || !candidates.contains(fingerprint)) {
+                    writer.println(line);
+                    continue;
+                }
+
+                Group group = groups.get(fingerprint);
+                if (group == null) {
+                    groups.put(fingerprint, new Group(row));
+                    Group complete = merged != null ? merged.get(fingerprint) : null;
+                    if (complete != null && complete.first.getId() == row.getId()
+                            && !complete.latestDescription.equals(row.getDescription())) {
+                        Transaction merge = new Transaction(row.getId(), complete.latestDescription, row.getAmount(),
+                                                            row.getCategory(), row.getType(), row.getDate());
+                        merge.appendCSV(writer.line());
+                        writer.endLine();
+                    } else {
+                        writer.println(line);
+                    }
+                } else if (group.matches(row)) {
+                    duplicates++;
+                    if (policy == DuplicatePolicy.FLAG) {
+                        writer.println(line);
+                    }
+                    if (listener != null) {
+                        listener.duplicateFound(row, original(group, merged != null ? merged.get(fingerprint) : null),
+                                                policy);
+                    }
+                } else {
+                    // Same fingerprint, different content: not a duplicate
+                    writer.println(line);
+                }
+            }
+            writer.flush();
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary.toPath());
+            throw e;
+        }
+        Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        return duplicates;
+    }
+
+    // Fingerprints the Bloom filter had already seen when they came round again
+    private static Set<Long> findCandidates(File source) throws IOException {
+        BloomFilter seen = new BloomFilter(Math.max(source.length() / MIN_ROW_BYTES, 1024));
+        Set<Long> candidates = new HashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8)) {
+            boolean first = true;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                boolean header = first && line.startsWith("id,");
+                first = false;
+                if (header || line.isBlank()) {
+                    continue;
+                }
+                Transaction row = Transaction.fromCSV(line);
+                if (row == null) {
+                    continue;
+                }
+                long fingerprint = fingerprintOf(row);
+                if (seen.mightContain(fingerprint)) {
+                    candidates.add(fingerprint);
+                } else {
+                    seen.add(fingerprint);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    // The first row of each candidate group, with the description of its last copy
+    private static Map<Long, Group> groupCandidates(File source, Set<Long> candidates) throws IOException {
+        Map<Long, Group> groups = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("id,")) {
+                    continue;
+                }
+                Transaction row = Transaction.fromCSV(line);
+                if (row == null || !candidates.contains(fingerprintOf(row))) {
+                    continue;
+                }
+                Group group = groups.putIfAbsent(fingerprintOf(row), new Group(row));
+                if (group != null && group.matches(row)) {
+                    group.latestDescription = row.getDescription();
+                }
+            }
+        }
+        return groups;
+    }
+
+    // The row a copy was matched with, as it appears in the output
+    private static Transaction original(Group group, Group merged) {
+        Transaction first = group.first;
+        if (merged == null) {
+            return first;
+        }
+        return new Transaction(first.getId(), merged.latestDescription, first.getAmount(), first.getCategory(),
+                               first.getType(), first.getDate());
+    }
+
+    private static long fingerprintOf(Transaction row) {
+        return FingerprintIndex.fingerprint((int) row.getDate().toEpochDay(), row.getAmount().getMinorUnits(),
+                                            (byte) row.getType().ordinal(), row.getCategory(), row.getDescription());
+    }
+}
@@ -0,0 +1,229 @@
+// CsvRowSplitter.java
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The one CSV field splitter behind Transaction.fromCSV and the parallel
+ * loader, so a row reads the same whichever path loads it.
+ * Commas outside quotes separate fields. A quote met while the field holds
+ * nothing but blanks opens a quoted value, in which "" stands for a quote;
+ * anything between the closing quote and the next comma is dropped.
+ * Unquoted fields are trimmed of blanks (chars up to ' ', as String.trim),
+ * quoted ones are kept as written.
+ *
+ * The row may also be UTF-8 bytes seen one byte per char, as the loader
+ * reads its mapped file: every character the splitter acts on is ASCII,
+ * and text fields are decoded on the way out. One instance per thread;
+ * it reuses its buffers from row to row.
+ */
+public class CsvRowSplitter {
+    private final boolean utf8Bytes;
+    private char[] chars = new char[256];
+    private CharBuffer view = CharBuffer.wrap(chars);
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private int length;
+    private int count;
+    // Categories repeat on almost every row, so decoded ones are kept by their raw text
+    private final List<char[]> cachedRaw = new ArrayList<>();
+    private final List<String> cachedValues = new ArrayList<>();
+    
+    public CsvRowSplitter(boolean utf8Bytes) {
+        this.utf8Bytes = utf8Bytes;
+    }
+    
+    // Splits row[from, to) and returns the number of fields
+    public int split(CharSequence row, int from, int to) {
+        length = 0;
+        count = 0;
+        int fieldStart = 0;
+        boolean inQuotes = false;
+        boolean fieldQuoted = false;
+        boolean blank = true;
+        
+        for (int i = from; i < to; i++) {
+            char c = row.charAt(i);
+            if (inQuotes) {
+                if (c == '"') {
+                    if (i + 1 < to && row.charAt(i + 1) == '"') {
+                        blank = put('"', blank);
+                        i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    blank = put(c, blank);
+                }
+            } else if (c == '"' && blank) {
+                length = fieldStart;
+                inQuotes = true;
+                fieldQuoted = true;
+            } else if (c == ',') {
+                endField(fieldStart, fieldQuoted);
+                fieldStart = length;
+                fieldQuoted = false;
+                blank = true;
+            } else if (!fieldQuoted) {
+                blank = put(c, blank);
+            }
+        }
+        endField(fieldStart, fieldQuoted);
+        return count;
+    }
+    
+    public int fieldCount() {
+        return count;
+    }
+    
+    // The field as written: quoted text verbatim, unquoted text trimmed
+    public String text(int field) {
+        return decode(starts[field], ends[field]);
+    }
+    
+    // The field trimmed even when quoted, looked up in a small cache first
+    public String trimmedText(int field) {
+        int start = trimStart(field);
+        int end = trimEnd(field, start);
+        for (int i = 0; i < cachedRaw.size(); i++) {
+            char[] raw = cachedRaw.get(i);
+            if (Arrays.equals(raw, 0, raw.length, chars, start, end)) {
+                return cachedValues.get(i);
+            }
+        }
+        String value = decode(start, end);
+        if (cachedRaw.size() < 64) {
+            cachedRaw.add(Arrays.copyOfRange(chars, start, end));
+            cachedValues.add(value);
+        }
+        return value;
+    }
+    
+    // Same as Integer.parseInt(text(field).trim())
+    public int intField(int field) {
+        int start = trimStart(field);
+        int end = trimEnd(field, start);
+        if (end - start > 0 && end - start < 10) {
+            int value = digits(start, end - start);
+            if (value >= 0) {
+                return value;
+            }
+        }
+        // Signs, long ids and non-ASCII digits, which parseInt also takes once decoded
+        return Integer.parseInt(decode(start, end));
+    }
+    
+    // Same as Money.parse(text(field)), in minor units
+    public long amountField(int field) {
+        int start = trimStart(field);
+        return Money.parseMinorUnits(view, start, trimEnd(field, start));
+    }
+    
+    // Whether the field, trimmed, is exactly the word
+    public boolean fieldEquals(int field, String word) {
+        int start = trimStart(field);
+        int end = trimEnd(field, start);
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (chars[start + i] != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // Reads a trimmed yyyy-MM-dd directly and leaves every other form to LocalDate.parse
+    public LocalDate dateField(int field) {
+        int start = trimStart(field);
+        int end = trimEnd(field, start);
+        if (end - start == 10 && chars[start + 4] == '-' && chars[start + 7] == '-') {
+            int year = digits(start, 4);
+            int month = digits(start + 5, 2);
+            int day = digits(start + 8, 2);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        return LocalDate.parse(decode(start, end));
+    }
+    
+    private int digits(int position, int count) {
+        int value = 0;
+        for (int i = position; i < position + count; i++) {
+            if (chars[i] < '0' || chars[i] > '9') {
+                return -1;
+            }
+            value = value * 10 + (chars[i] - '0');
+        }
+        return value;
+    }
+    
+    private boolean put(char c, boolean blank) {
+        if (length == chars.length) {
+            chars = Arrays.copyOf(chars, length * 2);
+            view = CharBuffer.wrap(chars);
+        }
+        chars[length++] = c;
+        return blank && c <= ' ';
+    }
+    
+    private void endField(int start, boolean fieldQuoted) {
+        int end = length;
+        if (!fieldQuoted) {
+            while (start < end && chars[start] <= ' ') {
+                start++;
+            }
+            while (end > start && chars[end - 1] <= ' ') {
+                end--;
+            }
+        }
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+    
+    private int trimStart(int field) {
+        int start = starts[field];
+        while (start < ends[field] && chars[start] <= ' ') {
+            start++;
+        }
+        return start;
+    }
+    
+    private int trimEnd(int field, int start) {
+        int end = ends[field];
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
+        }
+        return end;
+    }
+    
+    private String decode(int start, int end) {
+        if (!utf8Bytes || isAscii(start, end)) {
+            return new String(chars, start, end - start);
+        }
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) chars[start + i];
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private boolean isAscii(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (chars[i] >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
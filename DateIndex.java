@@ -0,0 +1,118 @@
+// DateIndex.java
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Secondary index ordering transactions newest first.
+ * Keys pack (date, id) into a long so that ascending key order is
+ * descending date, then ascending id within a day.
+ */
+public class DateIndex {
+    public static final long FIRST_PAGE = Long.MIN_VALUE;
+    
+    private final NavigableSet<Long> keys = new TreeSet<>();
+    
+    public static long key(int epochDay, int id) {
+        return ((long) -epochDay << 32) | (id & 0xFFFFFFFFL);
+    }
+    
+    public static int idOf(long key) {
+        return (int) key;
+    }
+    
+    public static int epochDayOf(long key) {
+        return (int) -(key >> 32);
+    }
+    
+    public void add(int epochDay, int id) {
+        keys.add(key(epochDay, id));
+    }
+    
+    public void remove(int epochDay, int id) {
+        keys.remove(key(epochDay, id));
+    }
+    
+    public void clear() {
+        keys.clear();
+    }
+    
+    public int size() {
+        return keys.size();
+    }
+    
+    // Date of the newest row; the index must not be empty
+    public int newestEpochDay() {
+        return epochDayOf(keys.first());
+    }
+    
+    // Date of the oldest row; the index must not be empty
+    public int oldestEpochDay() {
+        return epochDayOf(keys.last());
+    }
+    
+    // All keys, newest first
+    public Iterable<Long> all() {
+        return keys;
+    }
+    
+    // Ids of the count most recent transactions
+    public int[] mostRecent(int count) {
+        int[] ids = new int[Math.min(Math.max(count, 0), keys.size())];
+        Iterator<Long> iterator = keys.iterator();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = idOf(iterator.next());
+        }
+        return ids;
+    }
+    
+    // Keys dated within [fromEpochDay, toEpochDay], newest first
+    public NavigableSet<Long> range(int fromEpochDay, int toEpochDay) {
+        return keys.subSet(key(toEpochDay, 0), true, key(fromEpochDay, -1), true);
+    }
+    
+    /**
+     * Keys dated within [fromEpochDay, toEpochDay] that come strictly after
+     * the cursor in the requested direction, as a live view of the index.
+     */
+    public NavigableSet<Long> window(int fromEpochDay, int toEpochDay, long cursor, boolean newestFirst) {
+        NavigableSet<Long> view = range(fromEpochDay, toEpochDay);
+        if (!newestFirst) {
+            view = view.descendingSet();
+        }
+        if (cursor == FIRST_PAGE) {
+            return view;
+        }
+        // A cursor outside the range comes either before all of it or after all of it
+        long first = newestFirst ? key(toEpochDay, 0) : key(fromEpochDay, -1);
+        long last = newestFirst ? key(fromEpochDay, -1) : key(toEpochDay, 0);
+        if (newestFirst ? cursor < first : cursor > first) {
+            return view;
+        }
+        if (newestFirst ? cursor >= last : cursor <= last) {
+            return Collections.emptyNavigableSet();
+        }
+        return view.tailSet(cursor, false);
+    }
+    
+    /**
+     * Up to limit keys strictly after the cursor (a key from a previous page,
+     * or FIRST_PAGE), newest first.
+     */
+    public long[] page(long cursor, int limit) {
+        Iterator<Long> iterator = (cursor == FIRST_PAGE ? keys : keys.tailSet(cursor, false)).iterator();
+        long[] page = new long[Math.min(Math.max(limit, 0), keys.size())];
+        int count = 0;
+        while (count < page.length && iterator.hasNext()) {
+            page[count++] = iterator.next();
+        }
+        return count == page.length ? page : Arrays.copyOf(page, count);
+    }
+    
+    // Whether any key sorts after the given one
+    public boolean hasAfter(long key) {
+        return keys.higher(key) != null;
+    }
+}
@@ -0,0 +1,525 @@
+// DifferentialCheck.java
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Randomized checks of the tracker's indexed and incremental paths against
+ * brute-force models computed from a plain list of rows.
+ *
+ * Usage: java DifferentialCheck [seed]
+ *
+ *   csv         fuzzed rows loaded by ParallelCsvLoader and by Transaction.fromCSV
+ *   queries     queries, paging, recent rows, search and monthly reports on a
+ *               ledger that keeps only a few months in memory, against a filter
+ *               over every row
+ *   budgets     alerts raised by adds, removes and edits, alert for alert,
+ *               against totals recomputed from every row after each change
+ *   duplicates  adds with the duplicate index against a scan of every stored row
+ *
+ * Each check prints OK or the first differences it found; exits with 1 if
+ * any check failed. A failing seed reproduces the same run.
+ */
+public class DifferentialCheck {
+    private static final String[] CATEGORIES = {"Food", "Rent", "Travel", "Fun", "Bills", "Health"};
+    private static final String[] WORDS = {"coffee", "lunch", "taxi", "rent", "movie", "gym", "book", "train"};
+    private static final int MAX_REPORTED = 5;
+
+    private static PrintStream results;
+    private static Random random;
+
+    public static void main(String[] args) throws Exception {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : LedgerGenerator.DEFAULT_SEED;
+        random = new Random(seed);
+        // Quiet the tracker's loading messages and the loaders' rejected-row reports
+        results = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        PrintStream errors = System.err;
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+
+        Path directory = Files.createTempDirectory("finance-differential");
+        boolean passed;
+        try {
+            passed = checkCsv(directory.resolve("csv").toFile());
+            passed &= checkQueries(directory.resolve("queries").toFile());
+            passed &= checkBudgets(directory.resolve("budgets").toFile());
+            passed &= checkDuplicates(directory.resolve("duplicates").toFile());
+        } finally {
+            System.setErr(errors);
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+        if (!passed) {
+            results.println("FAILED with seed " + seed);
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    // --- csv ---
+
+    // Field variants the two paths must read alike, including ones both reject
+    private static final String[] IDS = {"5", " 5", "+5", "\t5", "-3", "x", "05", "\"6\"", "", "99999999999"};
+    private static final String[] TEXTS = {"Lunch", " Lunch ", "\"Lunch, team\"", "\"Say \"\"hi\"\"\"", "\"a\" junk",
+                                           " \"q\" ", "\tTab\t", "\"\"", "\"unterminated", "Café",
+                                           "\"Ünï\"", "a\"b", "\"\" \"x\"", "  "};
+    private static final String[] AMOUNTS = {"12.50", "+3", " 4.125 ", "\"7.00\"", "1e3", "-0.125", "\t9\t", ".5",
+                                             "5.", "", "1.2.3", "99999999999999999999"};
+    private static final String[] TYPES = {"INCOME", "EXPENSE", " EXPENSE\t", "income", "\"INCOME\"", "EXPENSES"};
+    private static final String[] DATES = {"2026-01-05", " 2026-02-28 ", "2026-02-30", "2026-1-5", "+2026-01-01",
+                                           "\"2026-03-04\"", "2026-03-04x", "\t2026-03-04"};
+    private static final String[] TAILS = {"", "", "", ",extra", ", ", ",\"x,y\""};
+
+    private static boolean checkCsv(File directory) throws IOException {
+        directory.mkdirs();
+        int lines = 30_000;
+        List<String> expected = new ArrayList<>();
+        int expectedRejected = 0;
+        StringBuilder file = new StringBuilder("id,description,amount,category,type,date\n");
+        for (int i = 0; i < lines; i++) {
+            String line = pick(IDS) + "," + pick(TEXTS) + "," + pick(AMOUNTS) + "," + pick(TEXTS) + ","
+                          + pick(TYPES) + "," + pick(DATES) + pick(TAILS);
+            if (random.nextInt(10) == 0) {
+                line = line.substring(0, line.lastIndexOf(','));
+            }
+            file.append(line).append('\n');
+            Transaction transaction = Transaction.fromCSV(line);
+            if (transaction != null) {
+                expected.add(show(transaction));
+            } else {
+                expectedRejected++;
+            }
+        }
+        File csv = new File(directory, "fuzzed.csv");
+        Files.write(csv.toPath(), file.toString().getBytes(StandardCharsets.UTF_8));
+
+        ParallelCsvLoader.Result loaded = ParallelCsvLoader.load(csv);
+        List<String> actual = loaded.getTransactions().stream().map(DifferentialCheck::show).collect(Collectors.toList());
+        Collections.sort(expected);
+        Collections.sort(actual);
+        List<String> failures = new ArrayList<>();
+        if (!actual.equals(expected)) {
+            List<String> missing = new ArrayList<>(expected);
+            actual.forEach(missing::remove);
+            List<String> extra = new ArrayList<>(actual);
+            expected.forEach(extra::remove);
+            failures.add("only fromCSV read " + missing.subList(0, Math.min(MAX_REPORTED, missing.size())));
+            failures.add("only the loader read " + extra.subList(0, Math.min(MAX_REPORTED, extra.size())));
+        }
+        if (loaded.getRejectedCount() != expectedRejected) {
+            failures.add("loader rejected " + loaded.getRejectedCount() + " rows, fromCSV " + expectedRejected);
+        }
+
+        // Without a header the first line is a row like any other
+        Files.write(csv.toPath(), ("1,\"a\",1.00,\"Food\",EXPENSE,2026-01-01\n2,\"b\",2.00,\"Food\",EXPENSE,2026-01-02\n")
+                .getBytes(StandardCharsets.UTF_8));
+        if (ParallelCsvLoader.load(csv).getTransactions().size() != 2) {
+            failures.add("a file without a header lost its first row");
+        }
+        return report("csv", lines + " fuzzed rows read alike by both paths", failures);
+    }
+
+    // --- queries ---
+
+    private static boolean checkQueries(File directory) {
+        List<Transaction> rows = new ArrayList<>();
+        FinanceTracker writer = new FinanceTracker(directory, PersistenceWriter.Durability.BATCHED);
+        try {
+            LocalDate first = LocalDate.of(2023, 1, 1);
+            for (int i = 0; i < 6_000; i++) {
+                Transaction transaction = new Transaction(pick(WORDS) + " " + pick(WORDS) + " #" + i,
+                                                          Money.ofMinor(1 + random.nextInt(50_000)),
+                                                          pick(CATEGORIES), pickType(),
+                                                          first.plusDays(random.nextInt(730)));
+                rows.add(transaction);
+            }
+            writer.addAll(rows);
+            for (int i = 0; i < 300; i++) {
+                Transaction removed = rows.remove(random.nextInt(rows.size()));
+                writer.removeTransaction(removed.getId());
+            }
+        } finally {
+            writer.close();
+        }
+
+        // A few hundred rows in memory, so nearly every read pages months in or scans them on disk
+        List<String> failures = new ArrayList<>();
+        FinanceTracker tracker = new FinanceTracker(directory, PersistenceWriter.Durability.BATCHED, 500);
+        try {
+            for (int i = 0; i < 200; i++) {
+                TransactionQuery query = randomQuery();
+                List<Transaction> expected = matching(rows, query);
+                int start = (int) Math.min(query.getOffset(), expected.size());
+                List<Transaction> window = expected.subList(start,
+                        (int) Math.min(start + Math.min(query.getLimit(), expected.size()), expected.size()));
+                try (Stream<Transaction> stream = tracker.query(query)) {
+                    compare(failures, "query " + describe(query), window, stream.collect(Collectors.toList()));
+                }
+
+                // Paging through the same filter, without the offset, must list every match once in order
+                int pageSize = 1 + random.nextInt(40);
+                TransactionQuery pages = randomFilter().limit(pageSize);
+                List<Transaction> paged = new ArrayList<>();
+                long cursor = DateIndex.FIRST_PAGE;
+                TransactionPage page;
+                do {
+                    page = tracker.page(copyFilter(pages).limit(pageSize).after(cursor));
+                    paged.addAll(page.getTransactions());
+                    cursor = page.getNextCursor();
+                } while (page.hasMore() && paged.size() <= rows.size());
+                compare(failures, "pages of " + pageSize + " for " + describe(pages), matching(rows, pages), paged);
+            }
+
+            List<Transaction> newestFirst = matching(rows, new TransactionQuery());
+            for (int count : new int[] {1, 10, 500, 2_000, rows.size() + 10}) {
+                compare(failures, "getMostRecentTransactions(" + count + ")",
+                        newestFirst.subList(0, Math.min(count, newestFirst.size())),
+                        tracker.getMostRecentTransactions(count));
+            }
+
+            for (String term : new String[] {"coffee", "un", "rent", "#12", "tra", "zzz"}) {
+                List<Transaction> expected = rows.stream()
+                        .filter(t -> t.getDescription().toLowerCase().contains(term)
+                                     || t.getCategory().toLowerCase().contains(term))
+                        .collect(Collectors.toList());
+                compareSets(failures, "search \"" + term + "\"", expected, tracker.searchTransactions(term));
+                if (tracker.countSearchMatches(term) != expected.size()) {
+                    failures.add("countSearchMatches(\"" + term + "\") = " + tracker.countSearchMatches(term)
+                                 + ", expected " + expected.size());
+                }
+            }
+
+            for (YearMonth month = YearMonth.of(2023, 1); month.isBefore(YearMonth.of(2025, 1));
+                    month = month.plusMonths(1)) {
+                checkMonth(failures, tracker, rows, month);
+            }
+        } finally {
+            tracker.close();
+        }
+        return report("queries", rows.size() + " rows, 200 queries and page runs, recent rows, search, reports",
+                      failures);
+    }
+
+    private static void checkMonth(List<String> failures, FinanceTracker tracker, List<Transaction> rows,
+                                   YearMonth month) {
+        Map<String, Money> expected = new TreeMap<>();
+        long count = 0;
+        long sum = 0;
+        for (Transaction transaction : rows) {
+            if (YearMonth.from(transaction.getDate()).equals(month)
+                    && transaction.getType() == Transaction.TransactionType.EXPENSE) {
+                expected.merge(transaction.getCategory(), transaction.getAmount(), Money::plus);
+                count++;
+                sum += transaction.getAmount().getMinorUnits();
+            }
+        }
+        Map<String, Money> actual = new TreeMap<>(tracker.getMonthlyExpensesByCategory(month));
+        if (!actual.equals(expected)) {
+            failures.add(month + " expenses by category " + actual + ", expected " + expected);
+        }
+        AggregateStats stats = tracker.analyze(month, month).total(Transaction.TransactionType.EXPENSE);
+        if (stats.getCount() != count || stats.getSum().getMinorUnits() != sum) {
+            failures.add(month + " analyze " + stats + ", expected " + count + " rows totalling "
+                         + Money.ofMinor(sum));
+        }
+    }
+
+    private static TransactionQuery randomQuery() {
+        TransactionQuery query = randomFilter();
+        if (random.nextBoolean()) {
+            query.offset(random.nextInt(200));
+        }
+        if (random.nextInt(4) > 0) {
+            query.limit(random.nextInt(300));
+        }
+        return query;
+    }
+
+    private static TransactionQuery randomFilter() {
+        TransactionQuery query = new TransactionQuery();
+        if (random.nextInt(3) == 0) {
+            query.type(pickType());
+        }
+        if (random.nextInt(3) == 0) {
+            query.category(pick(CATEGORIES));
+        }
+        if (random.nextBoolean()) {
+            LocalDate from = LocalDate.of(2022, 12, 1).plusDays(random.nextInt(800));
+            LocalDate to = from.plusDays(random.nextInt(200) - 20);
+            query.between(random.nextInt(5) == 0 ? null : from, random.nextInt(5) == 0 ? null : to);
+        }
+        if (random.nextInt(3) == 0) {
+            long min = random.nextInt(50_000);
+            query.amountBetween(Money.ofMinor(min), random.nextBoolean() ? null : Money.ofMinor(min + random.nextInt(20_000)));
+        }
+        if (random.nextBoolean()) {
+            query.order(TransactionQuery.Order.OLDEST_FIRST);
+        }
+        return query;
+    }
+
+    private static TransactionQuery copyFilter(TransactionQuery query) {
+        return new TransactionQuery().type(query.getType()).category(query.getCategory())
+                .between(query.getFrom(), query.getTo()).amountBetween(query.getMinAmount(), query.getMaxAmount())
+                .order(query.getOrder());
+    }
+
+    // Every row the filter admits, newest first (date descending, then id ascending) or the reverse
+    private static List<Transaction> matching(List<Transaction> rows, TransactionQuery query) {
+        Comparator<Transaction> newestFirst = Comparator.comparing(Transaction::getDate).reversed()
+                .thenComparingInt(Transaction::getId);
+        return rows.stream()
+                .filter(t -> query.getType() == null || t.getType() == query.getType())
+                .filter(t -> query.getCategory() == null || t.getCategory().equals(query.getCategory()))
+                .filter(t -> query.getFrom() == null || !t.getDate().isBefore(query.getFrom()))
+                .filter(t -> query.getTo() == null || !t.getDate().isAfter(query.getTo()))
+                .filter(t -> query.getMinAmount() == null || t.getAmount().compareTo(query.getMinAmount()) >= 0)
+                .filter(t -> query.getMaxAmount() == null || t.getAmount().compareTo(query.getMaxAmount()) <= 0)
+                .sorted(query.getOrder() == TransactionQuery.Order.NEWEST_FIRST ? newestFirst : newestFirst.reversed())
+                .collect(Collectors.toList());
+    }
+
+    private static String describe(TransactionQuery query) {
+        return "[type " + query.getType() + ", category " + query.getCategory() + ", " + query.getFrom() + ".."
+               + query.getTo() + ", amount " + query.getMinAmount() + ".." + query.getMaxAmount() + ", "
+               + query.getOrder() + ", offset " + query.getOffset() + ", limit " + query.getLimit() + "]";
+    }
+
+    // --- budgets ---
+
+    private static boolean checkBudgets(File directory) {
+        List<BudgetRule> rules = new ArrayList<>(List.of(
+                BudgetRule.limit("Food", BudgetRule.Period.MONTH, Money.ofMinor(60_000)),
+                BudgetRule.limit("Food", BudgetRule.Period.MONTH, Money.ofMinor(90_000)),
+                BudgetRule.limit("Rent", BudgetRule.Period.YEAR, Money.ofMinor(400_000)),
+                BudgetRule.limit(null, BudgetRule.Period.MONTH, Money.ofMinor(150_000)),
+                BudgetRule.spendingOverIncome(BudgetRule.Period.MONTH),
+                BudgetRule.spendingOverIncome(BudgetRule.Period.YEAR)));
+        // Added halfway, when most of its periods are already over it
+        BudgetRule late = BudgetRule.limit("Travel", BudgetRule.Period.MONTH, Money.ofMinor(20_000));
+
+        List<String> failures = new ArrayList<>();
+        List<Transaction> rows = new ArrayList<>();
+        // Periods each rule has already evaluated, as "rule name|period"
+        Set<String> seen = new HashSet<>();
+        List<String> alerts = new ArrayList<>();
+        FinanceTracker tracker = new FinanceTracker(directory, PersistenceWriter.Durability.ON_SHUTDOWN);
+        int operations = 3_000;
+        try {
+            rules.forEach(tracker::addBudgetRule);
+            tracker.addBudgetListener(alert -> alerts.add(alert.getRule().getName() + "|" + alert.getPeriod() + "|"
+                                                          + alert.getSpent()));
+            LocalDate first = LocalDate.of(2025, 1, 1);
+            for (int i = 0; i < operations && failures.size() < MAX_REPORTED; i++) {
+                if (i == operations / 2) {
+                    tracker.addBudgetRule(late);
+                    rules.add(late);
+                }
+                int choice = rows.isEmpty() ? 0 : random.nextInt(20);
+                List<Transaction> before = new ArrayList<>(rows);
+                Transaction row;
+                Set<String> categories = new HashSet<>();
+                String operation;
+                alerts.clear();
+                if (choice < 12) {
+                    row = new Transaction("row " + i, Money.ofMinor(100 + random.nextInt(20_000)), pick(CATEGORIES),
+                                          random.nextInt(4) == 0 ? Transaction.TransactionType.INCOME
+                                                                 : Transaction.TransactionType.EXPENSE,
+                                          first.plusDays(random.nextInt(240)));
+                    operation = "add " + show(row);
+                    tracker.addTransaction(row);
+                    rows.add(row);
+                    categories.add(row.getCategory());
+                } else {
+                    int index = random.nextInt(rows.size());
+                    row = rows.get(index);
+                    Transaction stored = tracker.getTransaction(row.getId());
+                    categories.add(row.getCategory());
+                    if (choice < 15) {
+                        operation = "remove " + show(row);
+                        tracker.removeTransaction(row.getId());
+                        rows.remove(index);
+                    } else if (choice < 18) {
+                        Money amount = Money.ofMinor(100 + random.nextInt(20_000));
+                        operation = "amount " + amount + " on " + show(row);
+                        stored.setAmount(amount);
+                        rows.set(index, copy(row, amount, row.getCategory()));
+                    } else {
+                        String category = pick(CATEGORIES);
+                        operation = "category " + category + " on " + show(row);
+                        stored.setCategory(category);
+                        rows.set(index, copy(row, row.getAmount(), category));
+                        categories.add(category);
+                    }
+                }
+
+                List<String> expected = new ArrayList<>();
+                for (BudgetRule rule : rules) {
+                    boolean watched = rule.isAgainstIncome() || (row.getType() == Transaction.TransactionType.EXPENSE
+                            && (rule.getCategory() == null || categories.contains(rule.getCategory())));
+                    if (!watched) {
+                        continue;
+                    }
+                    String period = periodOf(rule, row.getDate());
+                    long spentBefore = measure(rule, period, before);
+                    long spentAfter = measure(rule, period, rows);
+                    long limit = rule.getLimit().getMinorUnits();
+                    boolean firstLook = seen.add(rule.getName() + "|" + period);
+                    if (firstLook ? limit < spentAfter : spentBefore <= limit && limit < spentAfter) {
+                        expected.add(rule.getName() + "|" + period + "|" + Money.ofMinor(spentAfter));
+                    }
+                }
+                Collections.sort(expected);
+                Collections.sort(alerts);
+                if (!alerts.equals(expected)) {
+                    failures.add(operation + " alerted " + alerts + ", expected " + expected);
+                }
+            }
+        } finally {
+            tracker.close();
+        }
+        return report("budgets", operations + " adds, removes and edits matched alert for alert", failures);
+    }
+
+    private static String periodOf(BudgetRule rule, LocalDate date) {
+        return rule.getPeriod() == BudgetRule.Period.MONTH ? YearMonth.from(date).toString()
+                                                           : Integer.toString(date.getYear());
+    }
+
+    // Expenses the rule counts in the period, less income for a spending-over-income rule
+    private static long measure(BudgetRule rule, String period, List<Transaction> rows) {
+        long total = 0;
+        for (Transaction transaction : rows) {
+            if (!periodOf(rule, transaction.getDate()).equals(period)) {
+                continue;
+            }
+            long amount = transaction.getAmount().getMinorUnits();
+            if (transaction.getType() == Transaction.TransactionType.INCOME) {
+                total -= rule.isAgainstIncome() ? amount : 0;
+            } else if (rule.getCategory() == null || rule.getCategory().equals(transaction.getCategory())) {
+                total += amount;
+            }
+        }
+        return total;
+    }
+
+    // --- duplicates ---
+
+    private static boolean checkDuplicates(File directory) {
+        List<String> failures = new ArrayList<>();
+        List<Transaction> rows = new ArrayList<>();
+        List<Transaction> reported = new ArrayList<>();
+        String[] descriptions = {"Coffee shop", "coffee-shop", "COFFEE  SHOP!", "Tea room", "tea. room", "Bakery"};
+        // Categories match exactly, unlike descriptions
+        String[] categories = {"Food", "food", "Rent"};
+        FinanceTracker tracker = new FinanceTracker(directory, PersistenceWriter.Durability.ON_SHUTDOWN);
+        int adds = 3_000;
+        try {
+            tracker.addDuplicateListener((duplicate, original, policy) -> reported.add(original));
+            LocalDate first = LocalDate.of(2025, 3, 1);
+            for (int i = 0; i < adds && failures.size() < MAX_REPORTED; i++) {
+                // Few distinct values, so matches are common
+                Transaction row = new Transaction(pick(descriptions), Money.ofMinor(100 * (1 + random.nextInt(4))),
+                                                  pick(categories), pickType(),
+                                                  first.plusDays(random.nextInt(20)));
+                tracker.setDuplicatePolicy(random.nextBoolean() ? DuplicatePolicy.SKIP : DuplicatePolicy.FLAG);
+                Set<Integer> matches = new HashSet<>();
+                for (Transaction stored : rows) {
+                    if (stored.getDate().equals(row.getDate()) && stored.getAmount().equals(row.getAmount())
+                            && stored.getType() == row.getType() && stored.getCategory().equals(row.getCategory())
+                            && FingerprintIndex.normalize(stored.getDescription())
+                                    .equals(FingerprintIndex.normalize(row.getDescription()))) {
+                        matches.add(stored.getId());
+                    }
+                }
+
+                reported.clear();
+                boolean added = tracker.addTransaction(row);
+                if (added) {
+                    rows.add(row);
+                }
+                boolean expectAdded = matches.isEmpty() || tracker.getDuplicatePolicy() == DuplicatePolicy.FLAG;
+                if (added != expectAdded) {
+                    failures.add(show(row) + " added " + added + ", expected " + expectAdded + " with matches "
+                                 + matches);
+                } else if (matches.isEmpty() ? !reported.isEmpty()
+                                             : reported.size() != 1 || !matches.contains(reported.get(0).getId())) {
+                    failures.add(show(row) + " reported " + reported + ", expected one of " + matches);
+                }
+            }
+            if (tracker.getTransactionCount() != rows.size()) {
+                failures.add("stored " + tracker.getTransactionCount() + " rows, expected " + rows.size());
+            }
+        } finally {
+            tracker.close();
+        }
+        return report("duplicates", adds + " adds under SKIP and FLAG matched a scan of every row", failures);
+    }
+
+    // --- shared ---
+
+    private static void compare(List<String> failures, String what, List<Transaction> expected,
+                                List<Transaction> actual) {
+        if (failures.size() >= MAX_REPORTED) {
+            return;
+        }
+        List<String> want = expected.stream().map(DifferentialCheck::show).collect(Collectors.toList());
+        List<String> got = actual.stream().map(DifferentialCheck::show).collect(Collectors.toList());
+        if (!got.equals(want)) {
+            int at = 0;
+            while (at < want.size() && at < got.size() && want.get(at).equals(got.get(at))) {
+                at++;
+            }
+            failures.add(what + ": " + got.size() + " rows, expected " + want.size() + "; first difference at "
+                         + at + ": " + (at < got.size() ? got.get(at) : "none") + " vs "
+                         + (at < want.size() ? want.get(at) : "none"));
+        }
+    }
+
+    private static void compareSets(List<String> failures, String what, List<Transaction> expected,
+                                    List<Transaction> actual) {
+        Comparator<Transaction> byId = Comparator.comparingInt(Transaction::getId);
+        List<Transaction> want = new ArrayList<>(expected);
+        List<Transaction> got = new ArrayList<>(actual);
+        want.sort(byId);
+        got.sort(byId);
+        compare(failures, what, want, got);
+    }
+
+    private static boolean report(String check, String summary, List<String> failures) {
+        if (failures.isEmpty()) {
+            results.println("OK: " + check + ": " + summary);
+            return true;
+        }
+        for (String failure : failures.subList(0, Math.min(MAX_REPORTED, failures.size()))) {
+            results.println("FAILED: " + check + ": " + failure);
+        }
+        return false;
+    }
+
+    private static Transaction copy(Transaction row, Money amount, String category) {
+        return new Transaction(row.getId(), row.getDescription(), amount, category, row.getType(), row.getDate());
+    }
+
+    private static String show(Transaction transaction) {
+        return transaction.getId() + "|" + transaction.getDescription() + "|" + transaction.getAmount() + "|"
+               + transaction.getCategory() + "|" + transaction.getType() + "|" + transaction.getDate();
+    }
+
+    private static String pick(String[] options) {
+        return options[random.nextInt(options.length)];
+    }
+
+    private static Transaction.TransactionType pickType() {
+        return random.nextBoolean() ? Transaction.TransactionType.INCOME : Transaction.TransactionType.EXPENSE;
+    }
+}
@@ -0,0 +1,11 @@
+// DuplicateListener.java
+
+/**
+ * Notified when an incoming row matches one already in the ledger. Called
+ * like BudgetListener, on the adding thread once the tracker has released
+ * its lock. original is the matched row as it stands after the policy was
+ * applied.
+ */
+public interface DuplicateListener {
+    void duplicateFound(Transaction duplicate, Transaction original, DuplicatePolicy policy);
+}
@@ -0,0 +1,15 @@
+// DuplicatePolicy.java
+
+/**
+ * What adds and imports do with a row whose date, amount, type, category
+ * and description (ignoring case and punctuation) match a row already in
+ * the ledger. Duplicate listeners hear about every match, whatever the policy.
+ */
+public enum DuplicatePolicy {
+    // The incoming row is dropped
+    SKIP,
+    // The incoming row is added anyway
+    FLAG,
+    // The incoming row is folded into the one it matches, which keeps its id and takes the incoming description
+    MERGE
+}
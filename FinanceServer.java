@@ -0,0 +1,613 @@
+// FinanceServer.java
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded HTTP/JSON server sharing one loaded tracker, so other local
+ * tools can query and update the ledger without loading it themselves.
+ * The JDK server multiplexes every connection on one NIO selector thread
+ * and runs each request on a fixed pool of workers; queries run in parallel
+ * under the tracker's read lock. Responses are streamed with chunked
+ * encoding as rows are produced, so a long listing is never built in memory.
+ *
+ *   GET    /balance
+ *   GET    /report[?month=YYYY-MM]
+ *   GET    /categories[?from=YYYY-MM&to=YYYY-MM]
+ *   GET    /search?q=K[&offset=N][&limit=N][&ranked=true]
+ *   GET    /transactions[?cursor=C][&limit=N][&type=T][&category=C][&from=D][&to=D][&min=A][&max=A]
+ *   GET    /transactions/ID
+ *   POST   /transactions        {"description":D,"amount":A,"category":C,"type":T[,"date":D]}
+ *   DELETE /transactions/ID
+ *
+ * Listings are newest first, a page at a time: pass a page's "next" value
+ * as the cursor of the following request. Errors come back as {"error":...}.
+ *
+ * Only requests addressed to localhost on the server's port are served, and
+ * POST and DELETE must carry Content-Type: application/json, so that web
+ * pages in a browser cannot read or change the ledger.
+ *
+ * Run with -Dsun.net.httpserver.nodelay=true (the serve command sets it):
+ * a streamed response leaves in several small writes, and with Nagle's
+ * algorithm on the last waits for the client's delayed ACK, about 40ms on
+ * every request.
+ */
+public class FinanceServer {
+    public static final int DEFAULT_PORT = 8080;
+    // Requests are short and mostly compute; a few more workers than cores covers fsync waits, while many more
+    // only lets the scheduler preempt lock holders and stretches the tail
+    public static final int DEFAULT_THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 1000;
+    // Connections waiting to be accepted, enough for a burst from hundreds of local clients
+    private static final int BACKLOG = 1024;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final LatencyHistogram HTTP_LATENCY = TrackerMetrics.get().latency(TrackerMetrics.Operation.HTTP);
+
+    // Ends a request with the given status; thrown by handlers before they start the response
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final FinanceTracker tracker;
+    private final HttpServer server;
+    private final ExecutorService workers;
+
+    public FinanceServer(FinanceTracker tracker, InetSocketAddress address, int threads) throws IOException {
+        this.tracker = tracker;
+        this.server = HttpServer.create(address, BACKLOG);
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "finance-http-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(workers);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // Port actually bound, e.g. when the address asked for port 0
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Stops accepting requests and waits up to delaySeconds for those in flight; the tracker stays open
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        workers.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            checkAccess(exchange);
+            route(exchange);
+        } catch (HttpError e) {
+            error(exchange, e.status, e.getMessage());
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            error(exchange, 400, e.getMessage());
+        } catch (IOException e) {
+            // The client went away mid-response; nothing more can be sent
+        } catch (RuntimeException e) {
+            error(exchange, 500, e.toString());
+        } finally {
+            exchange.close();
+            HTTP_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Binding to loopback keeps other machines out, but not the web pages
+     * open in the user's browser. A page can post to this server directly, or
+     * point its own host name at 127.0.0.1 and read the replies. So the Host
+     * must name this server, and so must the Origin when a browser sends one.
+     * Requests that change the ledger must send a JSON body. A browser sends
+     * that cross-origin only after an OPTIONS preflight, which gets 405.
+     */
+    private void checkAccess(HttpExchange exchange) {
+        Headers headers = exchange.getRequestHeaders();
+        String host = headers.getFirst("Host");
+        if (host == null || !isLocalAuthority(host)) {
+            throw new HttpError(421, "Not served for host " + host);
+        }
+        String origin = headers.getFirst("Origin");
+        if (origin != null && !(origin.regionMatches(true, 0, "http://", 0, 7)
+                                && isLocalAuthority(origin.substring(7)))) {
+            throw new HttpError(403, "Cross-origin requests are not allowed");
+        }
+        String method = exchange.getRequestMethod();
+        if (method.equals("POST") || method.equals("DELETE")) {
+            String type = headers.getFirst("Content-Type");
+            String mediaType = type != null ? type.split(";", 2)[0].trim() : "";
+            if (!mediaType.equalsIgnoreCase("application/json")) {
+                throw new HttpError(415, method + " requests must be sent as application/json");
+            }
+        }
+    }
+
+    // host:port naming this server through a loopback name
+    private boolean isLocalAuthority(String authority) {
+        String port = ":" + getPort();
+        if (!authority.endsWith(port)) {
+            return false;
+        }
+        String host = authority.substring(0, authority.length() - port.length());
+        return host.equalsIgnoreCase("localhost") || host.equals("127.0.0.1") || host.equals("[::1]");
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        if (path.equals("/transactions")) {
+            if (method.equals("POST")) {
+                add(exchange);
+            } else {
+                requireGet(method);
+                list(exchange, query);
+            }
+            return;
+        }
+        if (path.startsWith("/transactions/")) {
+            int id = parseId(path.substring("/transactions/".length()));
+            if (method.equals("DELETE")) {
+                remove(exchange, id);
+            } else {
+                requireGet(method);
+                get(exchange, id);
+            }
+            return;
+        }
+
+        requireGet(method);
+        switch (path) {
+            case "/balance":
+                balance(exchange);
+                break;
+            case "/report":
+                report(exchange, query);
+                break;
+            case "/categories":
+                categories(exchange, query);
+                break;
+            case "/search":
+                search(exchange, query);
+                break;
+            default:
+                throw new HttpError(404, "No such resource: " + path);
+        }
+    }
+
+    // --- Endpoints ---
+
+    private void balance(HttpExchange exchange) throws IOException {
+        Money income = tracker.calculateTotalIncome();
+        Money expenses = tracker.calculateTotalExpenses();
+        LineWriter out = respond(exchange, 200);
+        StringBuilder line = out.line().append('{');
+        amount(line, "income", income).append(',');
+        amount(line, "expenses", expenses).append(',');
+        amount(line, "balance", income.minus(expenses)).append('}');
+        out.endLine();
+        out.flush();
+    }
+
+    // Month totals come from the manifest and the memoized category report, so closed months need not load
+    private void report(HttpExchange exchange, Map<String, String> query) throws IOException {
+        YearMonth month = query.containsKey("month") ? YearMonth.parse(query.get("month")) : YearMonth.now();
+        Money income = tracker.getMonthlyTotal(month, Transaction.TransactionType.INCOME);
+        Money expenses = tracker.getMonthlyTotal(month, Transaction.TransactionType.EXPENSE);
+        Map<String, Money> categories = tracker.getMonthlyExpensesByCategory(month);
+
+        LineWriter out = respond(exchange, 200);
+        StringBuilder line = out.line().append('{');
+        text(line, "month", month.toString()).append(',');
+        amount(line, "income", income).append(',');
+        amount(line, "expenses", expenses).append(',');
+        amount(line, "net", income.minus(expenses)).append(',');
+        line.append("\"categories\":[");
+        out.endLine();
+        writeCategories(out, categories);
+        out.line().append("]}");
+        out.endLine();
+        out.flush();
+    }
+
+    // Expenses by category over the months from..to, both defaulting to the current month
+    private void categories(HttpExchange exchange, Map<String, String> query) throws IOException {
+        YearMonth from = query.containsKey("from") ? YearMonth.parse(query.get("from")) : YearMonth.now();
+        YearMonth to = query.containsKey("to") ? YearMonth.parse(query.get("to")) : from;
+        Map<String, Money> categories = tracker.getExpensesByCategory(from, to);
+
+        LineWriter out = respond(exchange, 200);
+        StringBuilder line = out.line().append('{');
+        text(line, "from", from.toString()).append(',');
+        text(line, "to", to.toString()).append(',');
+        line.append("\"categories\":[");
+        out.endLine();
+        writeCategories(out, categories);
+        out.line().append("]}");
+        out.endLine();
+        out.flush();
+    }
+
+    private void search(HttpExchange exchange, Map<String, String> query) throws IOException {
+        String keyword = query.get("q");
+        if (keyword == null || keyword.isBlank()) {
+            throw new IllegalArgumentException("Missing q");
+        }
+        int offset = query.containsKey("offset") ? Integer.parseInt(query.get("offset")) : 0;
+        boolean ranked = Boolean.parseBoolean(query.get("ranked"));
+        List<Transaction> matches = tracker.searchTransactions(keyword, TrigramIndex.MatchMode.SUBSTRING, ranked,
+                                                               offset, pageSize(query));
+
+        LineWriter out = respond(exchange, 200);
+        out.line().append("{\"transactions\":[");
+        out.endLine();
+        for (int i = 0; i < matches.size(); i++) {
+            writeTransaction(out, matches.get(i), i > 0);
+        }
+        out.line().append("]}");
+        out.endLine();
+        out.flush();
+    }
+
+    // One page, streamed from the date index as the tracker's query cursor fetches it
+    private void list(HttpExchange exchange, Map<String, String> query) throws IOException {
+        int pageSize = pageSize(query);
+        TransactionQuery filter = new TransactionQuery()
+                .after(query.containsKey("cursor") ? Long.parseLong(query.get("cursor")) : DateIndex.FIRST_PAGE)
+                .between(query.containsKey("from") ? LocalDate.parse(query.get("from")) : null,
+                         query.containsKey("to") ? LocalDate.parse(query.get("to")) : null)
+                .amountBetween(query.containsKey("min") ? Money.parse(query.get("min")) : null,
+                               query.containsKey("max") ? Money.parse(query.get("max")) : null)
+                // One row more than the page tells whether another page follows
+                .limit(pageSize + 1L);
+        if (query.containsKey("type")) {
+            filter.type(Transaction.TransactionType.valueOf(query.get("type").toUpperCase()));
+        }
+        if (query.containsKey("category")) {
+            filter.category(query.get("category"));
+        }
+
+        Iterator<Transaction> rows = tracker.query(filter).iterator();
+        // The first row is fetched before the status is sent, so a bad request still gets a 400
+        boolean hasRow = rows.hasNext();
+        LineWriter out = respond(exchange, 200);
+        out.line().append("{\"transactions\":[");
+        out.endLine();
+        Transaction last = null;
+        int count = 0;
+        while (hasRow && count < pageSize) {
+            last = rows.next();
+            writeTransaction(out, last, count++ > 0);
+            hasRow = rows.hasNext();
+        }
+        StringBuilder line = out.line().append("],");
+        if (last != null) {
+            // A string, as JSON readers may not hold a 64-bit number exactly
+            text(line, "next", Long.toString(DateIndex.key((int) last.getDate().toEpochDay(), last.getId())))
+                    .append(',');
+        }
+        line.append("\"hasMore\":").append(hasRow).append('}');
+        out.endLine();
+        out.flush();
+    }
+
+    private void get(HttpExchange exchange, int id) throws IOException {
+        Transaction transaction = tracker.getTransaction(id);
+        if (transaction == null) {
+            throw new HttpError(404, "No transaction with id " + id);
+        }
+        LineWriter out = respond(exchange, 200);
+        writeTransaction(out, transaction, false);
+        out.flush();
+    }
+
+    private void add(HttpExchange exchange) throws IOException {
+        Map<String, String> fields = parseObject(readBody(exchange));
+        String description = singleLine(fields, "description");
+        String category = singleLine(fields, "category");
+        Money amount = Money.parse(required(fields, "amount"));
+        if (!amount.isPositive()) {
+            throw new IllegalArgumentException("Amount must be greater than zero");
+        }
+        Transaction.TransactionType type = Transaction.TransactionType.valueOf(required(fields, "type").toUpperCase());
+        LocalDate date = fields.get("date") != null ? LocalDate.parse(fields.get("date")) : LocalDate.now();
+
+        Transaction transaction = new Transaction(description, amount, category, type, date);
+        if (!tracker.addTransaction(transaction)) {
+            // Only a duplicate the tracker's policy skips or merges is turned away
+            throw new HttpError(409, "Matches an existing transaction; not added");
+        }
+        LineWriter out = respond(exchange, 201);
+        writeTransaction(out, transaction, false);
+        out.flush();
+    }
+
+    private void remove(HttpExchange exchange, int id) throws IOException {
+        if (!tracker.removeTransaction(id)) {
+            throw new HttpError(404, "No transaction with id " + id);
+        }
+        LineWriter out = respond(exchange, 200);
+        out.line().append("{\"id\":").append(id).append('}');
+        out.endLine();
+        out.flush();
+    }
+
+    // --- Output ---
+
+    // Sends the status with chunked encoding and returns a writer over the body
+    private static LineWriter respond(HttpExchange exchange, int status) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, 0);
+        return new LineWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+    }
+
+    private static void error(HttpExchange exchange, int status, String message) {
+        try {
+            LineWriter out = respond(exchange, status);
+            text(out.line().append('{'), "error", message != null ? message : "Failed").append('}');
+            out.endLine();
+            out.flush();
+        } catch (IOException e) {
+            // The client is gone, or the response had already started
+        }
+    }
+
+    // Largest first, one per line
+    private static void writeCategories(LineWriter out, Map<String, Money> categories) throws IOException {
+        List<Map.Entry<String, Money>> sorted = new ArrayList<>(categories.entrySet());
+        sorted.sort(Map.Entry.<String, Money>comparingByValue().reversed());
+        for (int i = 0; i < sorted.size(); i++) {
+            StringBuilder line = out.line();
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append('{');
+            text(line, "category", sorted.get(i).getKey()).append(',');
+            amount(line, "expenses", sorted.get(i).getValue()).append('}');
+            out.endLine();
+        }
+    }
+
+    private static void writeTransaction(LineWriter out, Transaction transaction, boolean comma) throws IOException {
+        StringBuilder line = out.line();
+        if (comma) {
+            line.append(',');
+        }
+        line.append("{\"id\":").append(transaction.getId()).append(',');
+        text(line, "description", transaction.getDescription()).append(',');
+        amount(line, "amount", transaction.getAmount()).append(',');
+        text(line, "category", transaction.getCategory()).append(',');
+        text(line, "type", transaction.getType().name()).append(",\"date\":\"");
+        TransactionFormat.appendDate(line, (int) transaction.getDate().toEpochDay()).append("\"}");
+        out.endLine();
+    }
+
+    private static StringBuilder text(StringBuilder line, String name, String value) {
+        line.append('"').append(name).append("\":");
+        return TransactionFormat.appendJson(line, value);
+    }
+
+    // Exact decimal, e.g. 12.05; a valid JSON number
+    private static StringBuilder amount(StringBuilder line, String name, Money value) {
+        line.append('"').append(name).append("\":");
+        return TransactionFormat.appendAmount(line, value.getMinorUnits());
+    }
+
+    // --- Parsing ---
+
+    private static void requireGet(String method) {
+        if (!method.equals("GET")) {
+            throw new HttpError(405, method + " is not supported here");
+        }
+    }
+
+    private static int parseId(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new HttpError(404, "No transaction with id " + text);
+        }
+    }
+
+    private static int pageSize(Map<String, String> query) {
+        int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : DEFAULT_PAGE_SIZE;
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return limit;
+    }
+
+    private static String required(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+        return value;
+    }
+
+    // The journal holds one row per line; text with a line break would be acknowledged, then lost on a crash
+    private static String singleLine(Map<String, String> fields, String name) {
+        String value = required(fields, name);
+        if (!Transaction.isSingleLine(value)) {
+            throw new HttpError(400, name + " must not contain line breaks");
+        }
+        return value;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals >= 0 ? pair.substring(0, equals) : pair;
+            String value = equals >= 0 ? pair.substring(equals + 1) : "";
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        InputStream body = exchange.getRequestBody();
+        byte[] bytes = body.readNBytes(MAX_BODY_BYTES + 1);
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new HttpError(413, "Request body over " + MAX_BODY_BYTES + " bytes");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a flat JSON object into its members' text: strings unescaped,
+     * numbers and literals as written, null as absent. Nested values are
+     * rejected, as no request needs them.
+     */
+    static Map<String, String> parseObject(String json) {
+        Map<String, String> fields = new HashMap<>();
+        int[] position = {skipSpace(json, 0)};
+        expect(json, position, '{');
+        if (peek(json, position) == '}') {
+            position[0]++;
+        } else {
+            while (true) {
+                String name = readString(json, position);
+                expect(json, position, ':');
+                String value = readValue(json, position);
+                if (value != null) {
+                    fields.put(name, value);
+                }
+                if (peek(json, position) == ',') {
+                    position[0]++;
+                    continue;
+                }
+                expect(json, position, '}');
+                break;
+            }
+        }
+        if (skipSpace(json, position[0]) != json.length()) {
+            throw new IllegalArgumentException("Unexpected text after the JSON object");
+        }
+        return fields;
+    }
+
+    private static String readValue(String json, int[] position) {
+        char c = peek(json, position);
+        if (c == '"') {
+            return readString(json, position);
+        }
+        if (c == '{' || c == '[') {
+            throw new IllegalArgumentException("Nested JSON values are not supported");
+        }
+        int start = position[0];
+        int end = start;
+        while (end < json.length() && ",}".indexOf(json.charAt(end)) < 0 && !Character.isWhitespace(json.charAt(end))) {
+            end++;
+        }
+        if (end == start) {
+            throw new IllegalArgumentException("Missing JSON value at " + start);
+        }
+        position[0] = end;
+        String token = json.substring(start, end);
+        return token.equals("null") ? null : token;
+    }
+
+    private static String readString(String json, int[] position) {
+        expect(json, position, '"');
+        StringBuilder value = new StringBuilder();
+        int i = position[0];
+        while (true) {
+            if (i >= json.length()) {
+                throw new IllegalArgumentException("Unterminated JSON string");
+            }
+            char c = json.charAt(i++);
+            if (c == '"') {
+                break;
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (i >= json.length()) {
+                throw new IllegalArgumentException("Unterminated JSON string");
+            }
+            char escaped = json.charAt(i++);
+            switch (escaped) {
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    if (i + 4 > json.length()) {
+                        throw new IllegalArgumentException("Bad \\u escape in JSON string");
+                    }
+                    value.append((char) Integer.parseInt(json.substring(i, i + 4), 16));
+                    i += 4;
+                    break;
+                default:
+                    // \" \\ and \/
+                    value.append(escaped);
+            }
+        }
+        position[0] = i;
+        return value.toString();
+    }
+
+    private static void expect(String json, int[] position, char expected) {
+        if (peek(json, position) != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' in JSON at " + position[0]);
+        }
+        position[0]++;
+    }
+
+    // Next non-space character, leaving the position on it; 0 at the end of the text
+    private static char peek(String json, int[] position) {
+        position[0] = skipSpace(json, position[0]);
+        return position[0] < json.length() ? json.charAt(position[0]) : 0;
+    }
+
+    private static int skipSpace(String json, int position) {
+        while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+}
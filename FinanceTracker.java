@@ -3,131 +3,1222 @@ import java.io.*;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Main service class for managing financial transactions
  * Handles CRUD operations and reporting functionality
+ * Safe for concurrent use: queries run in parallel under a shared read lock,
+ * mutations are serialized, and long reports can run against a snapshot().
+ * The ledger is stored as one partition per month; only open months are
+ * loaded at startup and older ones are loaded the first time a call needs them.
  */
 public class FinanceTracker {
-    private List<Transaction> transactions;
-    private static final String DATA_FILE = "transactions.csv";
+    private final TransactionStore store;
+    private final TransactionJournal journal;
+    private final PersistenceWriter persistence;
+    private final PartitionedLedger ledger;
+    private final PartitionTable partitions = new PartitionTable();
+    private final MonthlyAggregateIndex monthlyIndex;
+    private final TrigramIndex searchIndex;
+    private final DateIndex dateIndex;
+    private final MonthSlotRanges slotRanges;
+    private final FingerprintIndex fingerprints;
+    private final TransactionListener editListener = new EditListener();
+    private final BudgetEngine budgets = new BudgetEngine(new LedgerTotals());
+    // How adds and imports treat a row matching one already stored; guarded by the write lock
+    private DuplicatePolicy duplicatePolicy = DuplicatePolicy.FLAG;
+    private final List<DuplicateListener> duplicateListeners = new CopyOnWriteArrayList<>();
+    // Matches found under the write lock, reported by commit() once it is released
+    private final Queue<Runnable> pendingDuplicates = new ConcurrentLinkedQueue<>();
+    private final File directory;
+    // Rows kept in memory before closed months are evicted; a single read may go over it while it runs
+    private final long cacheRows;
+    // Readers share the lock; mutations, including setter edits, take it exclusively
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Journal records queued since the last snapshot was requested; guarded by the write lock
+    private int journaledRecords;
+    // Single-file snapshot from before the ledger was partitioned; split into months on first start
+    private static final String DATA_FILE = "transactions.ledger";
+    private static final String CSV_FILE = "transactions.csv";
+    private static final String CSV_HEADER = "id,description,amount,category,type,date";
+    private static final String JOURNAL_FILE = "transactions.journal";
+    // Queued journal entries before mutations wait for the disk, once they have released the lock
+    private static final int PERSISTENCE_QUEUE_CAPACITY = 4096;
+    private static final int MIN_COMPACTION_RECORDS = 1000;
+    public static final long DEFAULT_CACHE_ROWS = 1_000_000;
+    private static final int IMPORT_BATCH_SIZE = 50_000;
+    private static final int QUERY_BATCH_SIZE = 256;
+    // Bounds how long one batch of a selective query holds the read lock
+    private static final int QUERY_SCAN_LIMIT = 65_536;
+    // Latency is measured from the call, so time spent waiting for the lock is included
+    private static final TrackerMetrics METRICS = TrackerMetrics.get();
+    private static final LatencyHistogram ADD_LATENCY = METRICS.latency(TrackerMetrics.Operation.ADD);
+    private static final LatencyHistogram REMOVE_LATENCY = METRICS.latency(TrackerMetrics.Operation.REMOVE);
+    private static final LatencyHistogram SEARCH_LATENCY = METRICS.latency(TrackerMetrics.Operation.SEARCH);
+    private static final LatencyHistogram QUERY_LATENCY = METRICS.latency(TrackerMetrics.Operation.QUERY);
+    private static final LatencyHistogram REPORT_LATENCY = METRICS.latency(TrackerMetrics.Operation.REPORT);
+    private static final LatencyHistogram LOAD_LATENCY = METRICS.latency(TrackerMetrics.Operation.LOAD);
+    private static final LatencyHistogram SAVE_LATENCY = METRICS.latency(TrackerMetrics.Operation.SAVE);
     
     public FinanceTracker() {
-        this.transactions = new ArrayList<>();
+        this(new File("."));
+    }
+    
+    // Keeps the ledger, journal and CSV bridge files in the given directory
+    public FinanceTracker(File directory) {
+        this(directory, PersistenceWriter.Durability.BATCHED);
+    }
+    
+    /**
+     * Mutations are persisted by a background writer; durability chooses
+     * whether they wait for the fsync (PER_OPERATION), return once queued
+     * with every group fsynced (BATCHED), or leave fsync to flush() and
+     * close() (ON_SHUTDOWN). Call close() before exiting either way.
+     */
+    public FinanceTracker(File directory, PersistenceWriter.Durability durability) {
+        this(directory, durability, DEFAULT_CACHE_ROWS);
+    }
+    
+    /**
+     * cacheRows bounds how many rows stay in memory: past it, the closed
+     * months read longest ago are dropped once saved, and load again from
+     * their segments when next needed. The current and later months always
+     * stay resident.
+     */
+    public FinanceTracker(File directory, PersistenceWriter.Durability durability, long cacheRows) {
+        this.directory = directory;
+        this.cacheRows = cacheRows;
+        this.store = new TransactionStore();
+        this.monthlyIndex = new MonthlyAggregateIndex();
+        this.searchIndex = new TrigramIndex(store);
+        this.dateIndex = new DateIndex();
+        this.slotRanges = new MonthSlotRanges(store);
+        this.fingerprints = new FingerprintIndex();
+        this.journal = new TransactionJournal(new File(directory, JOURNAL_FILE).getPath());
+        this.persistence = new PersistenceWriter(journal, durability, PERSISTENCE_QUEUE_CAPACITY);
+        this.ledger = new PartitionedLedger(directory);
         loadTransactionsFromFile();
+        this.journaledRecords = journal.getRecordCount();
     }
     
+    /**
+     * Adds the transaction unless the duplicate policy says otherwise:
+     * returns false if it matched a stored row and was skipped or merged.
+     * Throws IllegalArgumentException for an amount with a currency, which
+     * the ledger cannot store yet.
+     */
     public boolean addTransaction(Transaction transaction) {
         if (transaction == null) {
             return false;
         }
+        requireNoCurrency(transaction.getAmount());
         
-        transactions.add(transaction);
-        saveTransactionsToFile();
-        return true;
+        long start = System.nanoTime();
+        boolean added;
+        long sequence = 0;
+        lock.writeLock().lock();
+        try {
+            int written = admit(transaction, null);
+            added = written == transaction.getId();
+            if (added) {
+                transaction.setListener(editListener);
+            }
+            if (written >= 0) {
+                sequence = journalRecord(TransactionJournal.addRecord(store, store.slotOf(written)));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(sequence);
+        ADD_LATENCY.recordSince(start);
+        return added;
     }
     
-    public boolean removeTransaction(int transactionId) {
-        boolean removed = transactions.removeIf(transaction -> transaction.getId() == transactionId);
+    /**
+     * Adds a batch under one lock acquisition as a single journal entry.
+     * A batch big enough to trigger compaction is written straight into a
+     * fresh snapshot instead of being journaled first. Duplicates are
+     * matched against rows stored before the call, each at most once, so
+     * identical rows within the batch are not duplicates of each other.
+     * Returns the number added.
+     */
+    public int addAll(Collection<Transaction> transactions) {
+        List<Transaction> batch = new ArrayList<>(transactions.size());
+        Set<Integer> ids = new HashSet<>();
+        for (Transaction transaction : transactions) {
+            if (transaction != null) {
+                requireNoCurrency(transaction.getAmount());
+                batch.add(transaction);
+                ids.add(transaction.getId());
+            }
+        }
+        return addBatch(batch, new DuplicateScope(ids::contains));
+    }
+    
+    private int addBatch(List<Transaction> batch, DuplicateScope scope) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
         
-        if (removed) {
-            saveTransactionsToFile();
+        long start = System.nanoTime();
+        int added = 0;
+        long sequence = 0;
+        lock.writeLock().lock();
+        try {
+            int[] written = new int[batch.size()];
+            int count = 0;
+            for (Transaction transaction : batch) {
+                int id = admit(transaction, scope);
+                if (id == transaction.getId()) {
+                    transaction.setListener(editListener);
+                    added++;
+                }
+                if (id >= 0) {
+                    written[count++] = id;
+                }
+            }
+            
+            if (count > 0 && journaledRecords + count >= compactionThreshold()) {
+                sequence = requestSnapshot();
+            } else if (count > 0) {
+                // Rows written are in dirty months, which are never evicted, so their ids still resolve
+                List<String> records = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    records.add(TransactionJournal.addRecord(store, store.slotOf(written[i])));
+                }
+                journaledRecords += records.size();
+                sequence = persistence.appendAll(records);
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
+        commit(sequence);
+        ADD_LATENCY.recordSince(start);
+        return added;
+    }
+    
+    /**
+     * Streams CSV rows (same layout as the data file, header optional) into
+     * the ledger in batches. Rows are parsed and validated outside the lock;
+     * invalid rows are counted and skipped. Imported rows get new ids so they
+     * can never overwrite existing transactions. Rows matching ones stored
+     * before the import began are handled by the duplicate policy, so
+     * statements that overlap earlier ones can be imported whole.
+     */
+    public ImportResult importTransactions(Reader source, ImportProgressListener listener) throws IOException {
+        long start = System.nanoTime();
+        long read = 0;
+        long imported = 0;
+        long rejected = 0;
+        List<Transaction> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        // Every row this import adds gets a fresh id from here on; a row added concurrently
+        // by another caller falls in the range too, and is then never treated as a match
+        int firstId = Transaction.peekNextId();
+        DuplicateScope scope = new DuplicateScope(id -> id >= firstId);
         
+        BufferedReader reader = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank() || (read == 0 && line.startsWith("id,"))) {
+                continue;
+            }
+            read++;
+            
+            Transaction transaction = Transaction.fromCSV(line, true);
+            if (isValidImport(transaction)) {
+                batch.add(transaction);
+            } else {
+                rejected++;
+            }
+            
+            if (batch.size() == IMPORT_BATCH_SIZE) {
+                imported += addBatch(batch, scope);
+                batch.clear();
+                if (listener != null) {
+                    listener.onProgress(read, imported, rejected);
+                }
+            }
+        }
+        imported += addBatch(batch, scope);
+        if (listener != null) {
+            listener.onProgress(read, imported, rejected);
+        }
+        return new ImportResult(read, imported, rejected, scope.matches(), System.nanoTime() - start);
+    }
+    
+    /**
+     * Writes every transaction as CSV in the data-file layout, header included,
+     * so the ledger can be opened in a spreadsheet or imported elsewhere.
+     * Returns the number of rows written.
+     */
+    public int exportTransactions(Writer target) throws IOException {
+        lock.readLock().lock();
+        try {
+            LineWriter writer = new LineWriter(target);
+            writer.println(CSV_HEADER);
+            int[] exported = {0};
+            forEachMonth((rows, slots) -> {
+                for (int slot : slots) {
+                    rows.appendCSV(slot, writer.line());
+                    writer.endLine();
+                }
+                exported[0] += slots.length;
+            });
+            writer.flush();
+            return exported[0];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private static boolean isValidImport(Transaction transaction) {
+        return transaction != null 
+               && !transaction.getDescription().isBlank()
+               && !transaction.getCategory().isBlank()
+               && transaction.getAmount().isPositive();
+    }
+    
+    public boolean removeTransaction(int transactionId) {
+        long start = System.nanoTime();
+        boolean removed;
+        long sequence = 0;
+        lock.writeLock().lock();
+        try {
+            removed = delete(transactionId);
+            
+            if (removed) {
+                sequence = journalRecord(TransactionJournal.removeRecord(transactionId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(sequence);
+        REMOVE_LATENCY.recordSince(start);
         return removed;
     }
     
+    // Constant-time lookup by id; setters on the returned copy edit the stored row
+    public Transaction getTransaction(int transactionId) {
+        lockReadFor(transactionId);
+        try {
+            int slot = store.slotOf(transactionId);
+            return slot >= 0 ? materialize(slot) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Newest first, like getTransactionsSortedByDate()
     public List<Transaction> getAllTransactions() {
-        return new ArrayList<>(transactions);
+        return getTransactionsSortedByDate();
     }
     
     public List<Transaction> getTransactionsSortedByDate() {
-        return transactions.stream()
-                .sorted((t1, t2) -> t2.getDate().compareTo(t1.getDate()))
-                .collect(Collectors.toList());
+        lock.readLock().lock();
+        try {
+            List<Transaction> result = new ArrayList<>((int) Math.min(store.size() + partitions.unloadedRows(),
+                                                                      Integer.MAX_VALUE - 8));
+            forEachMonth((rows, slots) -> {
+                for (int slot : slots) {
+                    result.add(materialize(rows, slot));
+                }
+            });
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public List<Transaction> getMostRecentTransactions(int count) {
+        // The months are picked and read under one acquisition, so an add or eviction between cannot shift them
+        lock.readLock().lock();
+        int oldestMonth = partitions.newestMonthsHolding(count, monthlyIndex::count);
+        if (partitions.allLoaded(oldestMonth, Integer.MAX_VALUE, entry -> true)) {
+            METRICS.partitionHit();
+        } else {
+            lock.readLock().unlock();
+            METRICS.partitionMiss();
+            int[] picked = new int[1];
+            loadThenLockRead(() -> {
+                picked[0] = partitions.newestMonthsHolding(count, monthlyIndex::count);
+                loadPartitions(picked[0], Integer.MAX_VALUE, entry -> true);
+            });
+            oldestMonth = picked[0];
+        }
+        partitions.touch(oldestMonth, Integer.MAX_VALUE);
+        try {
+            List<Transaction> result = new ArrayList<>();
+            for (int id : dateIndex.mostRecent(count)) {
+                result.add(materializeById(id));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Transactions dated from..to inclusive, newest first
+    public List<Transaction> getTransactionsBetween(LocalDate from, LocalDate to) {
+        lockRead(MonthlyAggregateIndex.monthKey(YearMonth.from(from)), MonthlyAggregateIndex.monthKey(YearMonth.from(to)));
+        try {
+            List<Transaction> result = new ArrayList<>();
+            for (long key : dateIndex.range((int) from.toEpochDay(), (int) to.toEpochDay())) {
+                result.add(materializeById(DateIndex.idOf(key)));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Newest-first listing one page at a time. Start with DateIndex.FIRST_PAGE
+     * and pass each page's next cursor to get the following one.
+     */
+    public TransactionPage getTransactionsPage(long cursor, int pageSize) {
+        return page(new TransactionQuery().after(cursor).limit(pageSize));
+    }
+    
+    /**
+     * Lazily streams the rows matching the query. Rows are fetched in small
+     * batches, each under a short read lock, so only rows the caller actually
+     * consumes are materialized. Concurrent changes may or may not be seen by
+     * an open stream, but it never fails because of them.
+     */
+    public Stream<Transaction> query(TransactionQuery query) {
+        QueryCursor cursor = new QueryCursor(query, query.getLimit());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, 
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+    
+    // One page of the query (limit is the page size); pass getNextCursor() to after() for the next page
+    public TransactionPage page(TransactionQuery query) {
+        long start = System.nanoTime();
+        int pageSize = (int) Math.min(query.getLimit(), Integer.MAX_VALUE - 1);
+        // Fetching one extra row tells whether another page follows
+        QueryCursor cursor = new QueryCursor(query, pageSize + 1L);
+        List<Transaction> result = new ArrayList<>(Math.min(pageSize, QUERY_BATCH_SIZE));
+        long nextCursor = query.getCursor();
+        while (result.size() < pageSize && cursor.hasNext()) {
+            result.add(cursor.next());
+            nextCursor = cursor.lastKey();
+        }
+        TransactionPage page = new TransactionPage(result, nextCursor, cursor.hasNext());
+        QUERY_LATENCY.recordSince(start);
+        return page;
     }
     
+    // Each category's transactions newest first
     public Map<String, List<Transaction>> getTransactionsByCategory() {
-        return transactions.stream()
-                .collect(Collectors.groupingBy(Transaction::getCategory));
+        lock.readLock().lock();
+        try {
+            Map<String, List<Transaction>> result = new HashMap<>();
+            forEachMonth((rows, slots) -> {
+                for (int slot : slots) {
+                    result.computeIfAbsent(rows.categoryAt(slot), category -> new ArrayList<>())
+                          .add(materialize(rows, slot));
+                }
+            });
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
     
     public List<Transaction> getTransactionsForCurrentMonth() {
-        YearMonth currentMonth = YearMonth.now();
-        return transactions.stream()
-                .filter(transaction -> YearMonth.from(transaction.getDate()).equals(currentMonth))
-                .collect(Collectors.toList());
+        return getTransactionsForMonth(YearMonth.now());
+    }
+    
+    public List<Transaction> getTransactionsForMonth(YearMonth month) {
+        return getTransactionsBetween(month.atDay(1), month.atEndOfMonth());
     }
     
     public List<Transaction> searchTransactions(String keyword) {
-        String searchTerm = keyword.toLowerCase().trim();
-        return transactions.stream()
-                .filter(transaction -> 
-                    transaction.getDescription().toLowerCase().contains(searchTerm) ||
-                    transaction.getCategory().toLowerCase().contains(searchTerm))
-                .collect(Collectors.toList());
+        return searchTransactions(keyword, TrigramIndex.MatchMode.SUBSTRING, false, 0, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Searches descriptions and categories through the trigram index.
+     * Returns at most limit matches after skipping offset; ranked results put
+     * exact and prefix matches ahead of plain substrings, newest first.
+     * Months evicted from memory are scanned from disk rather than reloaded.
+     */
+    public List<Transaction> searchTransactions(String keyword, TrigramIndex.MatchMode mode, 
+                                                boolean ranked, int offset, int limit) {
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            String searchTerm = keyword.toLowerCase().trim();
+            int skip = Math.max(offset, 0);
+            if (partitions.allLoaded()) {
+                int[] slots = searchIndex.search(searchTerm, mode, ranked);
+                int from = Math.min(skip, slots.length);
+                int to = (int) Math.min((long) from + Math.max(limit, 0), slots.length);
+                List<Transaction> result = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++) {
+                    result.add(materialize(slots[i]));
+                }
+                return result;
+            }
+            
+            SearchResults results = new SearchResults(ranked, (long) skip + Math.max(limit, 0));
+            results.addAll(store, searchIndex.match(searchTerm, mode));
+            forEachEvictedMonth(rows -> results.addAll(rows, TrigramIndex.scan(rows, searchTerm, mode)));
+            return results.toList(skip);
+        } finally {
+            lock.readLock().unlock();
+            SEARCH_LATENCY.recordSince(start);
+        }
+    }
+    
+    // Number of rows searchTransactions(keyword) would return, without materializing any
+    public int countSearchMatches(String keyword) {
+        lock.readLock().lock();
+        try {
+            String searchTerm = keyword.toLowerCase().trim();
+            int[] count = {searchIndex.match(searchTerm, TrigramIndex.MatchMode.SUBSTRING).slots.length};
+            forEachEvictedMonth(rows -> count[0] += TrigramIndex.scan(rows, searchTerm,
+                                                                      TrigramIndex.MatchMode.SUBSTRING).slots.length);
+            return count[0];
+        } finally {
+            lock.readLock().unlock();
+        }
     }
     
-    public double calculateTotalIncome() {
-        return transactions.stream()
-                .filter(t -> t.getType() == Transaction.TransactionType.INCOME)
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+    private Transaction materializeById(int transactionId) {
+        return materialize(store.slotOf(transactionId));
     }
     
-    public double calculateTotalExpenses() {
-        return transactions.stream()
-                .filter(t -> t.getType() == Transaction.TransactionType.EXPENSE)
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+    // Returned copies stay bound to the tracker so edits through their setters are applied
+    private Transaction materialize(int slot) {
+        return materialize(store, slot);
     }
     
-    public double getCurrentBalance() {
-        return calculateTotalIncome() - calculateTotalExpenses();
+    // Also for rows of a month read from disk by forEachMonth(); an edit loads the month first
+    private Transaction materialize(TransactionStore rows, int slot) {
+        Transaction transaction = rows.toTransaction(slot);
+        transaction.setListener(editListener);
+        return transaction;
     }
     
-    public Map<String, Double> getMonthlyExpensesByCategory() {
-        YearMonth currentMonth = YearMonth.now();
-        return transactions.stream()
-                .filter(t -> t.getType() == Transaction.TransactionType.EXPENSE)
-                .filter(t -> YearMonth.from(t.getDate()).equals(currentMonth))
-                .collect(Collectors.groupingBy(
-                    Transaction::getCategory,
-                    Collectors.summingDouble(Transaction::getAmount)
-                ));
+    public Money calculateTotalIncome() {
+        lock.readLock().lock();
+        try {
+            return Money.ofMinor(totalOf(Transaction.TransactionType.INCOME));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public Money calculateTotalExpenses() {
+        lock.readLock().lock();
+        try {
+            return Money.ofMinor(totalOf(Transaction.TransactionType.EXPENSE));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public Money getCurrentBalance() {
+        lock.readLock().lock();
+        try {
+            return Money.ofMinor(totalOf(Transaction.TransactionType.INCOME)
+                                 - totalOf(Transaction.TransactionType.EXPENSE));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Loaded rows plus the manifest totals of months still on disk; read lock held
+    private long totalOf(Transaction.TransactionType type) {
+        return store.totalOf(type) + partitions.unloadedTotal(type);
+    }
+    
+    // Recomputes the running totals of the loaded rows from scratch and compares them with the maintained values
+    public boolean verifyConsistency() {
+        lock.readLock().lock();
+        try {
+            return store.verifyTotals();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public Map<String, Money> getMonthlyExpensesByCategory() {
+        return getMonthlyExpensesByCategory(YearMonth.now());
+    }
+    
+    public Map<String, Money> getMonthlyExpensesByCategory(YearMonth month) {
+        return getExpensesByCategory(month, month);
+    }
+    
+    /**
+     * Expense totals per category over the months from..to inclusive. A
+     * closed month's totals are memoized the first time they are computed,
+     * so later reports neither rescan nor reload it, until it changes.
+     */
+    public Map<String, Money> getExpensesByCategory(YearMonth from, YearMonth to) {
+        long start = System.nanoTime();
+        int fromKey = MonthlyAggregateIndex.monthKey(from);
+        int toKey = MonthlyAggregateIndex.monthKey(to);
+        lockRead(fromKey, toKey, entry -> entry.expensesByCategory == null);
+        try {
+            Map<String, Money> result = new HashMap<>();
+            sumExpensesByCategory(fromKey, toKey).forEach((category, total) -> {
+                if (total != 0) {
+                    result.put(category, Money.ofMinor(total));
+                }
+            });
+            return result;
+        } finally {
+            lock.readLock().unlock();
+            REPORT_LATENCY.recordSince(start);
+        }
     }
     
-    private void saveTransactionsToFile() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(DATA_FILE))) {
-            writer.println("id,description,amount,category,type,date");
+    // Lock held, with every month in range that has no memo loaded
+    private Map<String, Long> sumExpensesByCategory(int fromKey, int toKey) {
+        StringDictionary categories = store.getCategoryDictionary();
+        Map<String, Long> totals = new HashMap<>();
+        for (PartitionTable.Entry entry : partitions.entries(fromKey, toKey)) {
+            Map<String, Long> memo = entry.expensesByCategory;
+            if (memo != null) {
+                METRICS.reportCacheHit();
+                memo.forEach((category, total) -> totals.merge(category, total, Long::sum));
+                continue;
+            }
+            METRICS.reportCacheMiss();
             
-            for (Transaction transaction : transactions) {
-                writer.println(transaction.toCSV());
+            long[] month = monthlyIndex.totalsByCategory(entry.monthKey, entry.monthKey,
+                                                         Transaction.TransactionType.EXPENSE,
+                                                         categories.codeLimit());
+            Map<String, Long> byCategory = new HashMap<>();
+            for (int code = 0; code < month.length; code++) {
+                if (month[code] != 0) {
+                    byCategory.put(categories.valueOf(code), month[code]);
+                }
+            }
+            // Only a saved, unchanged closed month is final; readers may race to set it, with the same value
+            if (entry.loaded && !entry.dirty && entry.persisted != null && entry.persisted.isSealed()) {
+                entry.expensesByCategory = Collections.unmodifiableMap(byCategory);
             }
+            byCategory.forEach((category, total) -> totals.merge(category, total, Long::sum));
+        }
+        return totals;
+    }
+    
+    public int getTransactionCountForMonth(YearMonth month) {
+        lockRead(MonthlyAggregateIndex.monthKey(month), MonthlyAggregateIndex.monthKey(month));
+        try {
+            return monthlyIndex.count(MonthlyAggregateIndex.monthKey(month));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public Money getMonthlyTotal(YearMonth month, Transaction.TransactionType type) {
+        return getTotalForPeriod(month, month, type);
+    }
+    
+    // Months still on disk are answered from the manifest, so long-range totals load nothing
+    public Money getTotalForPeriod(YearMonth from, YearMonth to, Transaction.TransactionType type) {
+        lock.readLock().lock();
+        try {
+            int fromKey = MonthlyAggregateIndex.monthKey(from);
+            int toKey = MonthlyAggregateIndex.monthKey(to);
+            return Money.ofMinor(monthlyIndex.total(fromKey, toKey, type) + partitions.unloadedTotal(fromKey, toKey, type));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Calendar-year rollup, e.g. for year-over-year comparisons
+    public Money getTotalForYear(int year, Transaction.TransactionType type) {
+        return getTotalForPeriod(YearMonth.of(year, 1), YearMonth.of(year, 12), type);
+    }
+    
+    public LedgerAnalytics analyze() {
+        return analyze(null, null);
+    }
+    
+    /**
+     * Count, sum, min, max and mean by category, month and weekday over the
+     * months from..to inclusive (null for an open end), computed in one
+     * parallel pass. Writers wait for the pass; readers do not. The pass
+     * covers only the stretch of the store holding those months' rows.
+     */
+    public LedgerAnalytics analyze(YearMonth from, YearMonth to) {
+        long start = System.nanoTime();
+        int fromKey = from != null ? MonthlyAggregateIndex.monthKey(from) : Integer.MIN_VALUE;
+        int toKey = to != null ? MonthlyAggregateIndex.monthKey(to) : Integer.MAX_VALUE;
+        lockRead(fromKey, toKey);
+        try {
+            int fromDay = 0;
+            int toDay = -1;
+            if (dateIndex.size() > 0) {
+                fromDay = dateIndex.oldestEpochDay();
+                toDay = dateIndex.newestEpochDay();
+                if (from != null) {
+                    fromDay = (int) Math.max(fromDay, from.atDay(1).toEpochDay());
+                }
+                if (to != null) {
+                    toDay = (int) Math.min(toDay, to.atEndOfMonth().toEpochDay());
+                }
+            }
+            int[] slots = slotRanges.span(fromKey, toKey);
+            return LedgerAnalytics.compute(store, slots[0], slots[1], fromDay, toDay);
+        } finally {
+            lock.readLock().unlock();
+            REPORT_LATENCY.recordSince(start);
+        }
+    }
+    
+    /**
+     * Folds the journal into a fresh snapshot and truncates it, waiting until
+     * both are on disk. Also called on shutdown so the next start has nothing
+     * to replay.
+     */
+    public void compact() {
+        long sequence;
+        lock.writeLock().lock();
+        try {
+            if (journaledRecords == 0) {
+                return;
+            }
+            sequence = requestSnapshot();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        try {
+            persistence.await(sequence);
         } catch (IOException e) {
             System.err.println("Error saving transactions to file: " + e.getMessage());
         }
     }
     
+    /**
+     * Blocks until every mutation made so far is written and fsynced,
+     * whatever the durability mode. Throws if any write has failed since
+     * the previous flush.
+     */
+    public void flush() throws IOException {
+        persistence.flush();
+    }
+    
+    // Compacts, then stops the background writer; the tracker is read-only afterwards
+    public void close() {
+        compact();
+        try {
+            persistence.close();
+        } catch (IOException e) {
+            System.err.println("Error closing journal: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Starts evaluating the rule on every add, remove and edit from now on.
+     * Alerts go to the budget listeners when a change pushes a period over
+     * the limit; a period already over it alerts again only after dropping
+     * back under.
+     */
+    public void addBudgetRule(BudgetRule rule) {
+        lock.writeLock().lock();
+        try {
+            budgets.addRule(rule);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public boolean removeBudgetRule(BudgetRule rule) {
+        lock.writeLock().lock();
+        try {
+            return budgets.removeRule(rule);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public List<BudgetRule> getBudgetRules() {
+        lock.readLock().lock();
+        try {
+            return budgets.getRules();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public void addBudgetListener(BudgetListener listener) {
+        budgets.addListener(listener);
+    }
+    
+    public void removeBudgetListener(BudgetListener listener) {
+        budgets.removeListener(listener);
+    }
+    
+    // Applies to adds and imports from now on; FLAG, which adds every row, by default
+    public void setDuplicatePolicy(DuplicatePolicy policy) {
+        lock.writeLock().lock();
+        try {
+            duplicatePolicy = Objects.requireNonNull(policy);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public DuplicatePolicy getDuplicatePolicy() {
+        lock.readLock().lock();
+        try {
+            return duplicatePolicy;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public void addDuplicateListener(DuplicateListener listener) {
+        duplicateListeners.add(listener);
+    }
+    
+    public void removeDuplicateListener(DuplicateListener listener) {
+        duplicateListeners.remove(listener);
+    }
+    
+    /**
+     * Copies the ledger's columns under the read lock and returns an immutable
+     * view, so a long-running report sees one consistent state without holding
+     * up writers while it works.
+     */
+    public LedgerSnapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            TransactionStore rows = store.copy();
+            // Months only on disk are copied from their segments, leaving the cache as it is
+            forEachEvictedMonth(month -> {
+                for (int slot = 0; slot < month.slotCount(); slot++) {
+                    if (month.isLive(slot)) {
+                        rows.addRow(month.idAt(slot), month.amountAt(slot), month.epochDayAt(slot),
+                                    month.typeCodeAt(slot), month.categoryAt(slot), month.descriptionAt(slot));
+                    }
+                }
+            });
+            return new LedgerSnapshot(rows);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Queues one journal record, or a snapshot instead once the journal outgrows the ledger,
+    // which keeps each mutation amortized O(1). Returns the sequence to commit.
+    private long journalRecord(String record) {
+        long sequence = persistence.append(record);
+        if (++journaledRecords >= compactionThreshold()) {
+            sequence = requestSnapshot();
+        }
+        return sequence;
+    }
+    
+    // Captured under the write lock so the snapshot covers exactly the records queued so far
+    private long requestSnapshot() {
+        journaledRecords = 0;
+        return persistence.snapshot(captureSnapshot());
+    }
+    
+    /**
+     * Waits for the write in PER_OPERATION mode, then hands out any budget
+     * alerts and duplicate matches the change raised; called after the lock
+     * is released so fsyncs can be shared and listeners may read the tracker.
+     */
+    private void commit(long sequence) {
+        try {
+            persistence.commit(sequence);
+        } catch (IOException e) {
+            System.err.println("Error writing to journal: " + e.getMessage());
+        }
+        budgets.deliverAlerts();
+        Runnable report;
+        while ((report = pendingDuplicates.poll()) != null) {
+            report.run();
+        }
+    }
+    
+    // The store, segments and journal keep bare minor units, so a currency would be dropped on the first save
+    private static void requireNoCurrency(Money amount) {
+        if (amount.getCurrency() != null) {
+            throw new IllegalArgumentException("Amounts with a currency cannot be stored yet: " + amount);
+        }
+    }
+    
+    private int compactionThreshold() {
+        return Math.max(MIN_COMPACTION_RECORDS, store.size());
+    }
+    
+    /**
+     * Copies the rows of every month changed since the last save and returns
+     * a task that writes just those partitions and a new manifest, so save
+     * cost follows recent activity rather than history. Write lock held.
+     */
+    private PersistenceWriter.SnapshotTask captureSnapshot() {
+        List<PartitionedLedger.Partition> all = new ArrayList<>();
+        Map<Integer, TransactionStore> changed = new HashMap<>();
+        for (PartitionTable.Entry entry : partitions.entries()) {
+            if (entry.dirty) {
+                TransactionStore rows = copyMonth(entry.monthKey);
+                changed.put(entry.monthKey, rows);
+                entry.persisted = PartitionedLedger.Partition.of(entry.monthKey, rows);
+                entry.dirty = false;
+            }
+            if (entry.persisted.getRowCount() > 0) {
+                all.add(entry.persisted);
+            } else {
+                partitions.remove(entry.monthKey);
+            }
+        }
+        
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                ledger.commit(all, changed);
+            } finally {
+                METRICS.ioSince(start);
+                SAVE_LATENCY.recordSince(start);
+            }
+        };
+    }
+    
+    // Detached copy of one month's rows in id order
+    private TransactionStore copyMonth(int monthKey) {
+        YearMonth month = MonthlyAggregateIndex.toYearMonth(monthKey);
+        NavigableSet<Long> keys = dateIndex.range((int) month.atDay(1).toEpochDay(),
+                                                  (int) month.atEndOfMonth().toEpochDay());
+        int[] ids = new int[keys.size()];
+        int count = 0;
+        for (long key : keys) {
+            ids[count++] = DateIndex.idOf(key);
+        }
+        Arrays.sort(ids);
+        
+        TransactionStore rows = new TransactionStore();
+        for (int id : ids) {
+            int slot = store.slotOf(id);
+            rows.addRow(id, store.amountAt(slot), store.epochDayAt(slot), store.typeCodeAt(slot),
+                        store.categoryAt(slot), store.descriptionAt(slot));
+        }
+        return rows;
+    }
+    
+    /**
+     * Takes the read lock with every partition of the months from..to in
+     * memory. Missing ones are loaded under the write lock first, which is
+     * then downgraded, so the caller always ends up holding just the read lock.
+     * Eviction also needs the write lock, so nothing is dropped while it is held.
+     */
+    private void lockRead(int fromMonthKey, int toMonthKey) {
+        lockRead(fromMonthKey, toMonthKey, entry -> true);
+    }
+    
+    // As above, loading only the months the caller says it needs
+    private void lockRead(int fromMonthKey, int toMonthKey, Predicate<PartitionTable.Entry> needed) {
+        lock.readLock().lock();
+        partitions.touch(fromMonthKey, toMonthKey);
+        if (partitions.allLoaded(fromMonthKey, toMonthKey, needed)) {
+            METRICS.partitionHit();
+            return;
+        }
+        lock.readLock().unlock();
+        METRICS.partitionMiss();
+        // The months are checked again under the write lock, as another thread may have loaded or evicted them
+        loadThenLockRead(() -> loadPartitions(fromMonthKey, toMonthKey, needed));
+    }
+    
+    // Read lock with the row for the id in memory, if it exists anywhere
+    private void lockReadFor(int transactionId) {
+        lock.readLock().lock();
+        int slot = store.slotOf(transactionId);
+        if (slot >= 0) {
+            int monthKey = MonthlyAggregateIndex.monthKeyOfEpochDay(store.epochDayAt(slot));
+            partitions.touch(monthKey, monthKey);
+            METRICS.partitionHit();
+            return;
+        }
+        if (partitions.unloadedCovering(transactionId).isEmpty()) {
+            return;
+        }
+        lock.readLock().unlock();
+        METRICS.partitionMiss();
+        loadThenLockRead(() -> loadPartitionsCovering(transactionId));
+    }
+    
+    private void loadThenLockRead(Runnable load) {
+        lock.writeLock().lock();
+        try {
+            load.run();
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * The partition loaders below run under the write lock, or in the
+     * constructor. Each first evicts cold months to make room for what it
+     * loads, never one the current call needs, so a read wider than the
+     * limit still sees all its months and only runs over it until the next load.
+     */
+    private void loadPartitions(int fromMonthKey, int toMonthKey, Predicate<PartitionTable.Entry> needed) {
+        loadPartitions(partitions.unloaded(fromMonthKey, toMonthKey, needed),
+                       monthKey -> monthKey >= fromMonthKey && monthKey <= toMonthKey);
+    }
+    
+    private void loadPartitionsCovering(int transactionId) {
+        if (store.slotOf(transactionId) < 0) {
+            loadPartitions(partitions.unloadedCovering(transactionId), monthKey -> false);
+        }
+    }
+    
+    private void loadMonth(int monthKey) {
+        PartitionTable.Entry entry = partitions.get(monthKey);
+        if (entry != null && !entry.loaded) {
+            loadPartitions(List.of(entry), key -> false);
+        }
+    }
+    
+    private void loadPartitions(List<PartitionTable.Entry> entries, IntPredicate keep) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        long rows = 0;
+        for (PartitionTable.Entry entry : entries) {
+            rows += entry.persisted.getRowCount();
+        }
+        makeRoom(rows, keep);
+        for (PartitionTable.Entry entry : entries) {
+            loadPartition(entry);
+        }
+    }
+    
+    // Evicts the least recently read closed months, other than those kept, until rows more would fit
+    private void makeRoom(long rows, IntPredicate keep) {
+        while (store.size() + rows > cacheRows) {
+            PartitionTable.Entry victim = partitions.leastRecentlyUsed(
+                    entry -> !keep.test(entry.monthKey) && isEvictable(entry));
+            if (victim == null) {
+                return;
+            }
+            evict(victim);
+        }
+    }
+    
+    // Only a closed month whose rows in memory are exactly what its segment on disk holds
+    private boolean isEvictable(PartitionTable.Entry entry) {
+        return !entry.dirty && entry.persisted != null && entry.persisted.isSealed()
+               && ledger.isCommitted(entry.persisted);
+    }
+    
+    private void evict(PartitionTable.Entry entry) {
+        YearMonth month = MonthlyAggregateIndex.toYearMonth(entry.monthKey);
+        NavigableSet<Long> keys = dateIndex.range((int) month.atDay(1).toEpochDay(),
+                                                  (int) month.atEndOfMonth().toEpochDay());
+        int[] ids = new int[keys.size()];
+        int count = 0;
+        for (long key : keys) {
+            ids[count++] = DateIndex.idOf(key);
+        }
+        for (int id : ids) {
+            removeRow(store.slotOf(id));
+        }
+        partitions.markUnloaded(entry);
+        METRICS.partitionEvicted();
+    }
+    
+    // One month's rows: the store holding them and their slots, newest first
+    private interface MonthVisitor<E extends Exception> {
+        void visit(TransactionStore rows, int[] slots) throws E;
+    }
+    
+    private interface EvictedMonthVisitor<E extends Exception> {
+        void visit(TransactionStore rows) throws E;
+    }
+    
+    /**
+     * Walks the whole ledger a month at a time, newest first; read lock held.
+     * Months in memory are read in place; evicted ones are decoded from their
+     * segments into a scratch store dropped after the visit. Whole-ledger
+     * reads therefore neither reload evicted months into the cache nor push
+     * out, or refresh the recency of, the months it holds.
+     */
+    private <E extends Exception> void forEachMonth(MonthVisitor<E> visitor) throws E {
+        List<PartitionTable.Entry> months = new ArrayList<>(partitions.entries());
+        Collections.reverse(months);
+        for (PartitionTable.Entry entry : months) {
+            if (entry.loaded) {
+                visitor.visit(store, residentSlots(entry.monthKey));
+            } else {
+                TransactionStore rows = readEvictedMonth(entry);
+                if (rows != null) {
+                    visitor.visit(rows, slotsNewestFirst(rows));
+                }
+            }
+        }
+    }
+    
+    // Just the evicted months, oldest first, for callers that cover the resident rows through an index
+    private <E extends Exception> void forEachEvictedMonth(EvictedMonthVisitor<E> visitor) throws E {
+        for (PartitionTable.Entry entry : partitions.entries()) {
+            if (!entry.loaded) {
+                TransactionStore rows = readEvictedMonth(entry);
+                if (rows != null) {
+                    visitor.visit(rows);
+                }
+            }
+        }
+    }
+    
+    // An evicted month's segment is committed and is not rewritten until the month is loaded and changed
+    private TransactionStore readEvictedMonth(PartitionTable.Entry entry) {
+        long start = System.nanoTime();
+        TransactionStore rows = new TransactionStore();
+        try {
+            ledger.load(entry.monthKey, rows::addRow);
+            return rows;
+        } catch (IOException e) {
+            System.err.println("Error reading transactions for " + MonthlyAggregateIndex.toYearMonth(entry.monthKey)
+                               + ": " + e.getMessage());
+            return null;
+        } finally {
+            METRICS.ioSince(start);
+        }
+    }
+    
+    private int[] residentSlots(int monthKey) {
+        YearMonth month = MonthlyAggregateIndex.toYearMonth(monthKey);
+        NavigableSet<Long> keys = dateIndex.range((int) month.atDay(1).toEpochDay(),
+                                                  (int) month.atEndOfMonth().toEpochDay());
+        int[] slots = new int[keys.size()];
+        int count = 0;
+        for (long key : keys) {
+            slots[count++] = store.slotOf(DateIndex.idOf(key));
+        }
+        return slots;
+    }
+    
+    // Date-index order for rows that are not in the index
+    private static int[] slotsNewestFirst(TransactionStore rows) {
+        long[] keys = new long[rows.size()];
+        int count = 0;
+        for (int slot = 0; slot < rows.slotCount(); slot++) {
+            if (rows.isLive(slot)) {
+                keys[count++] = DateIndex.key(rows.epochDayAt(slot), rows.idAt(slot));
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        int[] slots = new int[count];
+        for (int i = 0; i < count; i++) {
+            slots[i] = rows.slotOf(DateIndex.idOf(keys[i]));
+        }
+        return slots;
+    }
+    
+    // A partition that fails to load still counts as loaded, so calls do not keep retrying it
+    private void loadPartition(PartitionTable.Entry entry) {
+        long start = System.nanoTime();
+        try {
+            ledger.load(entry.monthKey, this::insertRow);
+        } catch (IOException e) {
+            System.err.println("Error loading transactions for " + MonthlyAggregateIndex.toYearMonth(entry.monthKey)
+                               + ": " + e.getMessage());
+        } finally {
+            partitions.markLoaded(entry);
+            METRICS.ioSince(start);
+        }
+    }
+    
     private void loadTransactionsFromFile() {
-        File file = new File(DATA_FILE);
-        if (!file.exists()) {
+        long start = System.nanoTime();
+        openPartitions();
+        
+        // Crash recovery: re-apply mutations made after the last snapshot.
+        // Replay is idempotent, so a crash between snapshot and truncate is harmless.
+        int replayed = journal.replay(this::insert, this::delete);
+        if (replayed > 0) {
+            System.out.println("Recovered " + replayed + " journaled changes.");
+        }
+        LOAD_LATENCY.recordSince(start);
+    }
+    
+    // Reads the manifest and loads the open months; sealed months wait until a call needs them
+    private void openPartitions() {
+        try {
+            for (PartitionedLedger.Partition partition : ledger.open()) {
+                partitions.addPersisted(partition);
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading transactions from file: " + e.getMessage());
+            return;
+        }
+        if (!ledger.exists()) {
+            migrateSnapshot();
             return;
         }
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String headerLine = reader.readLine(); // Skip CSV header
-            String line;
-            int loadedCount = 0;
-            
-            while ((line = reader.readLine()) != null) {
-                Transaction transaction = Transaction.fromCSV(line);
-                if (transaction != null) {
-                    transactions.add(transaction);
-                    loadedCount++;
-                }
+        for (PartitionTable.Entry entry : partitions.entries()) {
+            if (!entry.persisted.isSealed()) {
+                loadPartition(entry);
+            }
+        }
+        Transaction.reserveIdsThrough(partitions.maxPersistedId());
+        
+        long total = store.size() + partitions.unloadedRows();
+        if (total > 0) {
+            System.out.println("Loaded " + store.size() + " of " + total + " transactions from file; "
+                               + "earlier months load when first used.");
+        }
+    }
+    
+    // Ledgers saved before partitioning, as one binary file or the older CSV, are split into months once
+    private void migrateSnapshot() {
+        File legacy = new File(directory, DATA_FILE);
+        if (legacy.exists()) {
+            loadLegacySnapshot(legacy);
+        } else {
+            migrateCsvSnapshot();
+        }
+        if (store.size() == 0) {
+            return;
+        }
+        
+        for (int slot = 0; slot < store.slotCount(); slot++) {
+            if (store.isLive(slot)) {
+                partitions.markDirty(MonthlyAggregateIndex.monthKeyOfEpochDay(store.epochDayAt(slot)));
             }
+        }
+        try {
+            captureSnapshot().write();
+            if (legacy.exists() && !legacy.delete()) {
+                System.err.println("Unable to delete " + legacy);
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving transactions to file: " + e.getMessage());
+        }
+    }
+    
+    private void loadLegacySnapshot(File file) {
+        long start = System.nanoTime();
+        try {
+            int[] maxId = {0};
+            int loadedCount = BinaryLedgerFormat.read(file, (id, amount, epochDay, type, category, description) -> {
+                insertRow(id, amount, epochDay, type, category, description);
+                maxId[0] = Math.max(maxId[0], id);
+            });
+            METRICS.ioSince(start);
+            Transaction.reserveIdsThrough(maxId[0]);
             
             if (loadedCount > 0) {
                 System.out.println("Loaded " + loadedCount + " transactions from file.");
@@ -137,7 +1228,548 @@ public class FinanceTracker {
         }
     }
     
+    // Ledgers saved before the binary format existed are read from the CSV once
+    private void migrateCsvSnapshot() {
+        File file = new File(directory, CSV_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        
+        try {
+            long start = System.nanoTime();
+            ParallelCsvLoader.Result result = ParallelCsvLoader.load(file);
+            METRICS.ioSince(start);
+            for (Transaction transaction : result.getTransactions()) {
+                insert(transaction);
+            }
+            int loadedCount = result.getTransactions().size();
+            
+            if (loadedCount > 0) {
+                System.out.println("Loaded " + loadedCount + " transactions from " + CSV_FILE + ".");
+            }
+            if (result.getRejectedCount() > 0) {
+                System.err.println("Skipped " + result.getRejectedCount() + " unreadable rows.");
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading transactions from file: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Stores an incoming row as the duplicate policy directs. Returns the id
+     * of the row that was written, which is the transaction's own unless it
+     * was merged into a match, or -1 if nothing changed. Write lock held.
+     */
+    private int admit(Transaction transaction, DuplicateScope scope) {
+        int slot = findDuplicate(transaction, scope);
+        if (slot < 0) {
+            insert(transaction);
+            return transaction.getId();
+        }
+        
+        int originalId = store.idAt(slot);
+        int written;
+        switch (duplicatePolicy) {
+            case SKIP:
+                written = -1;
+                break;
+            case MERGE:
+                written = merge(slot, transaction) ? originalId : -1;
+                break;
+            default: // FLAG
+                insert(transaction);
+                written = transaction.getId();
+        }
+        if (!duplicateListeners.isEmpty()) {
+            Transaction original = materializeById(originalId);
+            DuplicatePolicy policy = duplicatePolicy;
+            pendingDuplicates.add(() -> {
+                for (DuplicateListener listener : duplicateListeners) {
+                    listener.duplicateFound(transaction, original, policy);
+                }
+            });
+        }
+        return written;
+    }
+    
+    /**
+     * Slot of a stored row with the same content as the transaction, or -1.
+     * The fingerprint covers the date, so only the transaction's own month
+     * is loaded, and the Bloom filter answers for most new rows without a
+     * table probe; candidates are then compared field by field.
+     */
+    private int findDuplicate(Transaction transaction, DuplicateScope scope) {
+        int epochDay = (int) transaction.getDate().toEpochDay();
+        loadMonth(MonthlyAggregateIndex.monthKeyOfEpochDay(epochDay));
+        long amount = transaction.getAmount().getMinorUnits();
+        byte type = (byte) transaction.getType().ordinal();
+        long fingerprint = FingerprintIndex.fingerprint(epochDay, amount, type, transaction.getCategory(),
+                                                        transaction.getDescription());
+        String description = null;
+        for (int id : fingerprints.idsOf(fingerprint)) {
+            if (id == transaction.getId() || (scope != null && !scope.canMatch(id))) {
+                continue;
+            }
+            int slot = store.slotOf(id);
+            if (store.epochDayAt(slot) != epochDay || store.amountAt(slot) != amount || store.typeCodeAt(slot) != type
+                    || !store.categoryAt(slot).equals(transaction.getCategory())) {
+                continue;
+            }
+            if (description == null) {
+                description = FingerprintIndex.normalize(transaction.getDescription());
+            }
+            if (FingerprintIndex.normalize(store.descriptionAt(slot)).equals(description)) {
+                if (scope != null) {
+                    scope.claim(id);
+                }
+                return slot;
+            }
+        }
+        return -1;
+    }
+    
+    // Everything but the description already matches; returns whether that changed
+    private boolean merge(int slot, Transaction transaction) {
+        if (store.descriptionAt(slot).equals(transaction.getDescription())) {
+            return false;
+        }
+        partitions.markDirty(MonthlyAggregateIndex.monthKeyOfEpochDay(store.epochDayAt(slot)));
+        unindexRow(slot);
+        store.updateDescription(slot, transaction.getDescription());
+        indexRow(slot);
+        return true;
+    }
+    
+    /**
+     * Single entry points for store mutations, so every index sees every change.
+     * Both first load any partition the change touches, so a partition is only
+     * ever rewritten from its complete contents, and flag the months they change.
+     */
+    private int insert(Transaction transaction) {
+        delete(transaction.getId());
+        int monthKey = MonthlyAggregateIndex.monthKey(YearMonth.from(transaction.getDate()));
+        loadMonth(monthKey);
+        // Marked first, as a dirty month cannot be evicted by loads the budget check may make
+        partitions.markDirty(monthKey);
+        budgets.rowChanged(transaction.getCategory(), transaction.getType(), (int) transaction.getDate().toEpochDay(),
+                           transaction.getAmount().getMinorUnits(), 1);
+        int slot = store.add(transaction);
+        indexRow(slot);
+        // Adds grow memory without loading anything, so they trim too; the month just changed is dirty and stays
+        if (store.size() > cacheRows) {
+            makeRoom(0, key -> false);
+        }
+        return slot;
+    }
+    
+    private boolean delete(int transactionId) {
+        loadPartitionsCovering(transactionId);
+        int slot = store.slotOf(transactionId);
+        if (slot < 0) {
+            return false;
+        }
+        partitions.markDirty(MonthlyAggregateIndex.monthKeyOfEpochDay(store.epochDayAt(slot)));
+        budgets.rowChanged(store.categoryAt(slot), store.typeAt(slot), store.epochDayAt(slot), store.amountAt(slot), -1);
+        // Evictions while seeding a budget may have compacted the store
+        removeRow(store.slotOf(transactionId));
+        return true;
+    }
+    
+    // Raw row changes for loaders, which leave partitions clean
+    private void insertRow(int id, long amount, int epochDay, byte type, String category, String description) {
+        int slot = store.slotOf(id);
+        if (slot >= 0) {
+            removeRow(slot);
+        }
+        indexRow(store.addRow(id, amount, epochDay, type, category, description));
+    }
+    
+    private void removeRow(int slot) {
+        unindexRow(slot);
+        int slotCount = store.slotCount();
+        store.remove(store.idAt(slot));
+        // The store compacted, moving the rows after each removed one
+        if (store.slotCount() < slotCount) {
+            slotRanges.rebuild();
+        }
+    }
+    
+    private void indexRow(int slot) {
+        monthlyIndex.add(store.epochDayAt(slot), store.categoryCodeAt(slot), 
+                         store.typeCodeAt(slot), store.amountAt(slot));
+        searchIndex.add(slot);
+        dateIndex.add(store.epochDayAt(slot), store.idAt(slot));
+        slotRanges.add(slot);
+        fingerprints.add(fingerprintAt(slot), store.idAt(slot));
+    }
+    
+    private void unindexRow(int slot) {
+        monthlyIndex.remove(store.epochDayAt(slot), store.categoryCodeAt(slot), 
+                            store.typeCodeAt(slot), store.amountAt(slot));
+        searchIndex.remove(slot);
+        dateIndex.remove(store.epochDayAt(slot), store.idAt(slot));
+        slotRanges.remove(slot);
+        fingerprints.remove(fingerprintAt(slot), store.idAt(slot));
+    }
+    
+    private long fingerprintAt(int slot) {
+        return FingerprintIndex.fingerprint(store.epochDayAt(slot), store.amountAt(slot), store.typeCodeAt(slot),
+                                            store.categoryAt(slot), store.descriptionAt(slot));
+    }
+    
     public int getTransactionCount() {
-        return transactions.size();
+        lock.readLock().lock();
+        try {
+            return (int) (store.size() + partitions.unloadedRows());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * The rows one add or import call may treat as duplicates: those stored
+     * before it, each matched at most once. A statement listing the same
+     * purchase twice thus adds the second copy unless the ledger already
+     * held two.
+     */
+    private static final class DuplicateScope {
+        private final IntPredicate ownRow;
+        private final Set<Integer> claimed = new HashSet<>();
+        
+        DuplicateScope(IntPredicate ownRow) {
+            this.ownRow = ownRow;
+        }
+        
+        boolean canMatch(int id) {
+            return !ownRow.test(id) && !claimed.contains(id);
+        }
+        
+        void claim(int id) {
+            claimed.add(id);
+        }
+        
+        int matches() {
+            return claimed.size();
+        }
+    }
+    
+    /**
+     * The first offset+limit search matches gathered from the resident rows
+     * and from months read off disk, in TrigramIndex.search()'s order: by id,
+     * or when ranked by rank, then newest first, then id. Only rows that
+     * place are materialized, and no more of them are kept than the page needs.
+     */
+    private final class SearchResults {
+        private final class Hit {
+            final int rank;
+            final long dateKey;
+            final int id;
+            final Transaction transaction;
+            
+            Hit(int rank, long dateKey, int id, Transaction transaction) {
+                this.rank = rank;
+                this.dateKey = dateKey;
+                this.id = id;
+                this.transaction = transaction;
+            }
+        }
+        
+        private final Comparator<Hit> order;
+        private final long wanted;
+        // Worst kept match first, so it is the one a better match replaces
+        private final PriorityQueue<Hit> kept;
+        
+        SearchResults(boolean ranked, long wanted) {
+            // The date key sorts newest first and ends with the id
+            this.order = ranked ? Comparator.<Hit>comparingInt(hit -> -hit.rank).thenComparingLong(hit -> hit.dateKey)
+                                : Comparator.comparingInt(hit -> hit.id);
+            this.wanted = wanted;
+            this.kept = new PriorityQueue<>(order.reversed());
+        }
+        
+        void addAll(TransactionStore rows, TrigramIndex.Matches matches) {
+            for (int i = 0; i < matches.slots.length && wanted > 0; i++) {
+                int slot = matches.slots[i];
+                int id = rows.idAt(slot);
+                Hit hit = new Hit(matches.ranks[i], DateIndex.key(rows.epochDayAt(slot), id), id, null);
+                if (kept.size() >= wanted && order.compare(hit, kept.peek()) >= 0) {
+                    continue;
+                }
+                kept.add(new Hit(hit.rank, hit.dateKey, id, materialize(rows, slot)));
+                if (kept.size() > wanted) {
+                    kept.poll();
+                }
+            }
+        }
+        
+        List<Transaction> toList(int offset) {
+            List<Hit> sorted = new ArrayList<>(kept);
+            sorted.sort(order);
+            List<Transaction> result = new ArrayList<>(Math.max(sorted.size() - offset, 0));
+            for (int i = offset; i < sorted.size(); i++) {
+                result.add(sorted.get(i).transaction);
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * Walks the date index from the query's cursor, filtering on the primitive
+     * columns so rows are only materialized once they match and are past the
+     * offset. Progress is kept as the last index key visited, which stays
+     * valid across the lock releases between batches.
+     */
+    private class QueryCursor implements Iterator<Transaction> {
+        private final TransactionQuery query;
+        private final int fromDay;
+        private final int toDay;
+        private final byte typeCode;
+        private final long minAmount;
+        private final long maxAmount;
+        private final Deque<Transaction> buffer = new ArrayDeque<>();
+        private final Deque<Long> bufferKeys = new ArrayDeque<>();
+        private long position;
+        // Month partition the next batch scans, stepping one partition at a time so each loads on first use
+        private int scanMonth;
+        private final int firstMonth;
+        private final int lastMonth;
+        private long toSkip;
+        private long remaining;
+        private long lastKey;
+        private boolean exhausted;
+        
+        QueryCursor(TransactionQuery query, long limit) {
+            this.query = query;
+            this.fromDay = query.getFrom() != null ? (int) query.getFrom().toEpochDay() : -Integer.MAX_VALUE;
+            this.toDay = query.getTo() != null ? (int) query.getTo().toEpochDay() : Integer.MAX_VALUE;
+            this.typeCode = query.getType() != null ? (byte) query.getType().ordinal() : TransactionStore.DELETED;
+            this.minAmount = query.getMinAmount() != null ? query.getMinAmount().getMinorUnits() : Long.MIN_VALUE;
+            this.maxAmount = query.getMaxAmount() != null ? query.getMaxAmount().getMinorUnits() : Long.MAX_VALUE;
+            this.position = query.getCursor();
+            this.lastKey = query.getCursor();
+            this.toSkip = query.getOffset();
+            this.remaining = limit;
+            this.exhausted = fromDay > toDay || limit == 0;
+            this.firstMonth = query.getFrom() != null ? MonthlyAggregateIndex.monthKey(YearMonth.from(query.getFrom())) 
+                                                      : Integer.MIN_VALUE;
+            this.lastMonth = query.getTo() != null ? MonthlyAggregateIndex.monthKey(YearMonth.from(query.getTo())) 
+                                                   : Integer.MAX_VALUE;
+            boolean newestFirst = query.getOrder() == TransactionQuery.Order.NEWEST_FIRST;
+            int startMonth = newestFirst ? lastMonth : firstMonth;
+            if (position != DateIndex.FIRST_PAGE) {
+                int cursorMonth = MonthlyAggregateIndex.monthKeyOfEpochDay(DateIndex.epochDayOf(position));
+                startMonth = newestFirst ? Math.min(startMonth, cursorMonth) : Math.max(startMonth, cursorMonth);
+            }
+            this.scanMonth = startMonth;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            // A batch can come back empty when a selective filter hits the scan limit
+            while (buffer.isEmpty() && !exhausted) {
+                fill();
+            }
+            return !buffer.isEmpty();
+        }
+        
+        @Override
+        public Transaction next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastKey = bufferKeys.removeFirst();
+            return buffer.removeFirst();
+        }
+        
+        // Index key of the row most recently returned by next()
+        long lastKey() {
+            return lastKey;
+        }
+        
+        private void fill() {
+            boolean newestFirst = query.getOrder() == TransactionQuery.Order.NEWEST_FIRST;
+            Integer month = newestFirst ? partitions.floorMonth(scanMonth) : partitions.ceilingMonth(scanMonth);
+            if (month == null || month < firstMonth || month > lastMonth) {
+                exhausted = true;
+                return;
+            }
+            
+            lockRead(month, month);
+            try {
+                // Resolved per batch because category codes are recycled as categories come and go
+                int categoryCode = -1;
+                if (query.getCategory() != null) {
+                    categoryCode = store.getCategoryDictionary().codeOf(query.getCategory());
+                    if (categoryCode < 0) {
+                        // Not in any loaded row, but an earlier or later partition may still have it
+                        scanMonth = newestFirst ? month - 1 : month + 1;
+                        return;
+                    }
+                }
+                
+                YearMonth partition = MonthlyAggregateIndex.toYearMonth(month);
+                int windowFrom = (int) Math.max(fromDay, partition.atDay(1).toEpochDay());
+                int windowTo = (int) Math.min(toDay, partition.atEndOfMonth().toEpochDay());
+                int scanned = 0;
+                Iterator<Long> keys = dateIndex.window(windowFrom, windowTo, position, newestFirst).iterator();
+                while (buffer.size() < QUERY_BATCH_SIZE && scanned < QUERY_SCAN_LIMIT) {
+                    if (!keys.hasNext()) {
+                        // This month is done; the next batch moves on to the adjacent partition
+                        scanMonth = newestFirst ? month - 1 : month + 1;
+                        return;
+                    }
+                    long key = keys.next();
+                    position = key;
+                    scanned++;
+                    
+                    int slot = store.slotOf(DateIndex.idOf(key));
+                    long amount = store.amountAt(slot);
+                    if ((typeCode != TransactionStore.DELETED && store.typeCodeAt(slot) != typeCode)
+                            || (categoryCode >= 0 && store.categoryCodeAt(slot) != categoryCode)
+                            || amount < minAmount || amount > maxAmount) {
+                        continue;
+                    }
+                    if (toSkip > 0) {
+                        toSkip--;
+                        continue;
+                    }
+                    buffer.addLast(materialize(slot));
+                    bufferKeys.addLast(key);
+                    if (--remaining == 0) {
+                        exhausted = true;
+                        return;
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+    
+    /**
+     * Seeds a budget period's total from the ledger; called by the budget
+     * engine under the write lock. Totals over all categories come from the
+     * indexes and the manifest, per-category ones may load closed months
+     * that have no memoized report yet.
+     */
+    private class LedgerTotals implements BudgetEngine.Totals {
+        @Override
+        public long expenses(String category, int fromMonthKey, int toMonthKey) {
+            if (category == null) {
+                return periodTotal(fromMonthKey, toMonthKey, Transaction.TransactionType.EXPENSE);
+            }
+            loadPartitions(fromMonthKey, toMonthKey, entry -> entry.expensesByCategory == null);
+            int code = store.getCategoryDictionary().codeOf(category);
+            long total = 0;
+            for (PartitionTable.Entry entry : partitions.entries(fromMonthKey, toMonthKey)) {
+                Map<String, Long> memo = entry.expensesByCategory;
+                if (memo != null) {
+                    total += memo.getOrDefault(category, 0L);
+                } else if (code >= 0) {
+                    total += monthlyIndex.categoryTotal(entry.monthKey, entry.monthKey, code,
+                                                        Transaction.TransactionType.EXPENSE);
+                }
+            }
+            return total;
+        }
+        
+        @Override
+        public long income(int fromMonthKey, int toMonthKey) {
+            return periodTotal(fromMonthKey, toMonthKey, Transaction.TransactionType.INCOME);
+        }
+        
+        private long periodTotal(int fromMonthKey, int toMonthKey, Transaction.TransactionType type) {
+            return monthlyIndex.total(fromMonthKey, toMonthKey, type)
+                   + partitions.unloadedTotal(fromMonthKey, toMonthKey, type);
+        }
+    }
+    
+    /**
+     * Applies setter edits on bound transactions to the store and journals
+     * the row's new state (journal adds act as upserts on replay).
+     */
+    private class EditListener implements TransactionListener {
+        @Override
+        public void amountChanged(Transaction transaction, Money amount) {
+            requireNoCurrency(amount);
+            long sequence = 0;
+            lock.writeLock().lock();
+            try {
+                int slot = slotForEdit(transaction, null, amount);
+                if (slot >= 0) {
+                    unindexRow(slot);
+                    store.updateAmount(slot, amount.getMinorUnits());
+                    indexRow(slot);
+                    sequence = recordEdit(slot);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            commit(sequence);
+        }
+        
+        @Override
+        public void descriptionChanged(Transaction transaction, String description) {
+            long sequence = 0;
+            lock.writeLock().lock();
+            try {
+                int slot = slotForEdit(transaction, null, null);
+                if (slot >= 0) {
+                    unindexRow(slot);
+                    store.updateDescription(slot, description);
+                    indexRow(slot);
+                    sequence = recordEdit(slot);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            commit(sequence);
+        }
+        
+        @Override
+        public void categoryChanged(Transaction transaction, String category) {
+            long sequence = 0;
+            lock.writeLock().lock();
+            try {
+                int slot = slotForEdit(transaction, category, null);
+                if (slot >= 0) {
+                    unindexRow(slot);
+                    store.updateCategory(slot, category);
+                    indexRow(slot);
+                    sequence = recordEdit(slot);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            commit(sequence);
+        }
+        
+        /**
+         * Slot of the edited row, or -1, after loading its month, which may
+         * have been evicted since the transaction was read. A new category or
+         * amount (null if unchanged) is shown to the budgets before it is applied.
+         */
+        private int slotForEdit(Transaction transaction, String category, Money amount) {
+            loadPartitionsCovering(transaction.getId());
+            int slot = store.slotOf(transaction.getId());
+            if (slot < 0 || (category == null && amount == null)) {
+                return slot;
+            }
+            
+            String oldCategory = store.categoryAt(slot);
+            long oldAmount = store.amountAt(slot);
+            int epochDay = store.epochDayAt(slot);
+            // Marked first, as a dirty month cannot be evicted by loads the budget check may make
+            partitions.markDirty(MonthlyAggregateIndex.monthKeyOfEpochDay(epochDay));
+            budgets.rowEdited(store.typeAt(slot), epochDay, oldCategory, oldAmount,
+                              category != null ? category : oldCategory,
+                              amount != null ? amount.getMinorUnits() : oldAmount);
+            return store.slotOf(transaction.getId());
+        }
+        
+        private long recordEdit(int slot) {
+            partitions.markDirty(MonthlyAggregateIndex.monthKeyOfEpochDay(store.epochDayAt(slot)));
+            return journalRecord(TransactionJournal.addRecord(store, slot));
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,199 @@
+// FinanceTrackerBenchmark.java
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Micro-benchmarks for the FinanceTracker hot paths.
+ *
+ * Usage: java FinanceTrackerBenchmark [rows...]
+ *   e.g. java -Xmx8g FinanceTrackerBenchmark 1000 100000 10000000
+ *
+ * Each benchmark warms up, then runs timed iterations and reports
+ * throughput (mean and spread across iterations) together with the bytes
+ * allocated per operation, the allocation rate and the GC cycles it caused,
+ * much like JMH with the gc profiler. Ledgers come from LedgerGenerator with
+ * a fixed seed and are written to a temporary directory, never to the
+ * working ledger.
+ */
+public class FinanceTrackerBenchmark {
+    private static final int[] DEFAULT_SIZES = {1_000, 10_000, 100_000, 1_000_000};
+    private static final int SAMPLE_ROWS = 4096;
+    private static final long WARMUP_NANOS = 2_000_000_000L;
+    private static final int ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 1_000_000_000L;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final PrintStream RESULTS = System.out;
+
+    // Results are folded in here so the JIT cannot discard the benchmarked work
+    private static volatile long sink;
+
+    interface Operation {
+        Object run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i].replace("_", ""));
+            }
+        }
+
+        // The tracker reports every load on stdout; keep that out of the results table
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        printHeader();
+        benchmarkRowCodec();
+        for (int rows : sizes) {
+            benchmarkLedger(rows);
+        }
+    }
+
+    // Per-row parsing and formatting do not depend on ledger size, so they run once
+    private static void benchmarkRowCodec() throws Exception {
+        LedgerGenerator generator = new LedgerGenerator(LedgerGenerator.DEFAULT_SEED);
+        Transaction[] transactions = new Transaction[SAMPLE_ROWS];
+        String[] lines = new String[SAMPLE_ROWS];
+        for (int i = 0; i < SAMPLE_ROWS; i++) {
+            transactions[i] = generator.next();
+            lines[i] = transactions[i].toCSV();
+        }
+
+        int[] cursor = {0};
+        measure("Transaction.fromCSV", 1, () -> Transaction.fromCSV(lines[cursor[0]++ & (SAMPLE_ROWS - 1)]));
+        measure("Transaction.toCSV", 1, () -> transactions[cursor[0]++ & (SAMPLE_ROWS - 1)].toCSV());
+    }
+
+    private static void benchmarkLedger(int rows) throws Exception {
+        File directory = Files.createTempDirectory("ledger-bench-").toFile();
+        try {
+            new LedgerGenerator(LedgerGenerator.DEFAULT_SEED).writeCsv(new File(directory, "transactions.csv"), rows);
+            // The first start migrates the CSV into the month partitions that later loads read
+            new FinanceTracker(directory).close();
+
+            // Startup reads only the manifest and open months; the second measure pulls in every partition
+            measure("loadTransactionsFromFile", rows, () -> new FinanceTracker(directory));
+            measure("loadAllPartitions", rows, () -> new FinanceTracker(directory).getTransactionsSortedByDate());
+
+            FinanceTracker tracker = new FinanceTracker(directory);
+            YearMonth month = YearMonth.of(2022, 6);
+            String[] keywords = {"market", "metro", "#42", "salary", "coffee"};
+            int[] cursor = {0};
+
+            measure("searchTransactions", rows, () -> tracker.searchTransactions(keywords[cursor[0]++ % keywords.length]));
+            measure("getMonthlyExpensesByCategory", rows, () -> tracker.getMonthlyExpensesByCategory(month));
+            measure("getTransactionsSortedByDate", rows, tracker::getTransactionsSortedByDate);
+            measure("analyze", rows, tracker::analyze);
+
+            // Runs last because every call grows the ledger and journal
+            LedgerGenerator generator = new LedgerGenerator(LedgerGenerator.DEFAULT_SEED + rows);
+            measure("addTransaction (persisted)", rows, () -> {
+                Transaction row = generator.next();
+                return tracker.addTransaction(new Transaction(row.getDescription(), row.getAmount(),
+                                                              row.getCategory(), row.getType(), row.getDate()));
+            });
+            tracker.close();
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    private static void measure(String name, int rows, Operation operation) throws Exception {
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd) {
+            consume(operation.run());
+        }
+
+        double[] throughput = new double[ITERATIONS];
+        long totalOps = 0;
+        long totalNanos = 0;
+        long totalBytes = 0;
+        long totalGcs = 0;
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            long gcsBefore = gcCount();
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            long end = start + ITERATION_NANOS;
+            long ops = 0;
+            long now;
+            do {
+                consume(operation.run());
+                ops++;
+                now = System.nanoTime();
+            } while (now < end);
+
+            totalBytes += allocatedBytes() - bytesBefore;
+            totalGcs += gcCount() - gcsBefore;
+            throughput[iteration] = ops * 1e9 / (now - start);
+            totalOps += ops;
+            totalNanos += now - start;
+        }
+
+        double mean = 0;
+        for (double value : throughput) {
+            mean += value;
+        }
+        mean /= ITERATIONS;
+        double variance = 0;
+        for (double value : throughput) {
+            variance += (value - mean) * (value - mean);
+        }
+        double spread = Math.sqrt(variance / (ITERATIONS - 1));
+
+        RESULTS.printf("%-30s %10d %14.1f %12.1f %14.0f %12.1f %6d%n",
+                          name, rows, mean, spread, (double) totalBytes / totalOps,
+                          totalBytes / 1048576.0 / (totalNanos / 1e9), totalGcs);
+    }
+
+    private static void printHeader() {
+        RESULTS.printf("%-30s %10s %14s %12s %14s %12s %6s%n",
+                          "Benchmark", "Rows", "ops/s", "+/-", "B/op", "alloc MB/s", "GCs");
+    }
+
+    // Summed over all live threads so work done in the parallel loaders is counted too
+    private static long allocatedBytes() {
+        long total = 0;
+        for (long bytes : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static void consume(Object result) {
+        sink += result == null ? 0 : System.identityHashCode(result);
+    }
+
+    private static void deleteRecursively(File directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            List<Path> ordered = new ArrayList<>();
+            paths.forEach(ordered::add);
+            ordered.sort(Comparator.reverseOrder());
+            for (Path path : ordered) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
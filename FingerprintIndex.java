@@ -0,0 +1,178 @@
+// FingerprintIndex.java
+import java.util.Arrays;
+
+/**
+ * Content index for duplicate detection: maps a row's fingerprint, a 64-bit
+ * hash of its date, amount, type, category and normalized description, to
+ * the ids of the rows that have it. Open addressing with linear probing as
+ * in IdIndex, except that one key may hold several ids. A Bloom filter
+ * rebuilt with the table answers most lookups for new content without
+ * probing the table; removed keys linger in it until the next rebuild,
+ * which only makes it answer "maybe" a little more often.
+ */
+public class FingerprintIndex {
+    private static final int EMPTY = 0;
+    private static final int FULL = 1;
+    private static final int TOMBSTONE = 2;
+    private static final int MIN_CAPACITY = 16;
+    private static final int[] NONE = new int[0];
+
+    private long[] keys = new long[MIN_CAPACITY];
+    private int[] ids = new int[MIN_CAPACITY];
+    private byte[] states = new byte[MIN_CAPACITY];
+    private BloomFilter filter = new BloomFilter(MIN_CAPACITY);
+    private int size;
+    private int tombstones;
+
+    /**
+     * Fingerprint of a row's content. Descriptions are compared the way a
+     * bank export varies them: ignoring case and treating any run of spaces
+     * or punctuation as one separator, so "AMAZON.COM  Mktp" matches
+     * "amazon com mktp".
+     */
+    public static long fingerprint(int epochDay, long amount, byte type, String category, String description) {
+        long hash = step(0x6A09E667F3BCC908L, epochDay);
+        hash = step(hash, amount);
+        hash = step(hash, type);
+        hash = step(hash, category.length());
+        for (int i = 0; i < category.length(); i++) {
+            hash = (hash ^ category.charAt(i)) * 0x100000001B3L;
+        }
+        hash = step(hash, -1);
+        boolean separator = false;
+        boolean started = false;
+        for (int i = 0; i < description.length(); i++) {
+            char c = description.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                separator = started;
+                continue;
+            }
+            if (separator) {
+                hash = (hash ^ ' ') * 0x100000001B3L;
+                separator = false;
+            }
+            hash = (hash ^ Character.toLowerCase(c)) * 0x100000001B3L;
+            started = true;
+        }
+        return finish(hash);
+    }
+
+    // The description as fingerprint() sees it
+    public static String normalize(String description) {
+        StringBuilder normalized = new StringBuilder(description.length());
+        boolean separator = false;
+        for (int i = 0; i < description.length(); i++) {
+            char c = description.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                separator = normalized.length() > 0;
+                continue;
+            }
+            if (separator) {
+                normalized.append(' ');
+                separator = false;
+            }
+            normalized.append(Character.toLowerCase(c));
+        }
+        return normalized.toString();
+    }
+
+    // Ids of the rows with the fingerprint, in no particular order
+    public int[] idsOf(long fingerprint) {
+        if (!filter.mightContain(fingerprint)) {
+            return NONE;
+        }
+        int[] found = NONE;
+        int count = 0;
+        int mask = keys.length - 1;
+        for (int index = hash(fingerprint) & mask; states[index] != EMPTY; index = (index + 1) & mask) {
+            if (states[index] == FULL && keys[index] == fingerprint) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, Math.max(2, count * 2));
+                }
+                found[count++] = ids[index];
+            }
+        }
+        return count == found.length ? found : Arrays.copyOf(found, count);
+    }
+
+    public void add(long fingerprint, int id) {
+        if ((size + tombstones + 1) * 4 > keys.length * 3) {
+            rehash(size * 4 > keys.length ? keys.length * 2 : keys.length);
+        }
+
+        int mask = keys.length - 1;
+        int reusable = -1;
+        for (int index = hash(fingerprint) & mask; ; index = (index + 1) & mask) {
+            if (states[index] == TOMBSTONE && reusable < 0) {
+                reusable = index;
+            }
+            if (states[index] == EMPTY) {
+                if (reusable >= 0) {
+                    index = reusable;
+                    tombstones--;
+                }
+                keys[index] = fingerprint;
+                ids[index] = id;
+                states[index] = FULL;
+                filter.add(fingerprint);
+                size++;
+                return;
+            }
+        }
+    }
+
+    public boolean remove(long fingerprint, int id) {
+        int mask = keys.length - 1;
+        for (int index = hash(fingerprint) & mask; states[index] != EMPTY; index = (index + 1) & mask) {
+            if (states[index] == FULL && keys[index] == fingerprint && ids[index] == id) {
+                states[index] = TOMBSTONE;
+                size--;
+                tombstones++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Also drops the keys removed since the last rehash from the filter
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldIds = ids;
+        byte[] oldStates = states;
+
+        keys = new long[capacity];
+        ids = new int[capacity];
+        states = new byte[capacity];
+        // Sized for the most keys the table holds before it next rehashes
+        filter = new BloomFilter(capacity * 3L / 4);
+        size = 0;
+        tombstones = 0;
+        for (int i = 0; i < oldStates.length; i++) {
+            if (oldStates[i] == FULL) {
+                add(oldKeys[i], oldIds[i]);
+            }
+        }
+    }
+
+    private static long step(long hash, long value) {
+        return Long.rotateLeft((hash ^ value) * 0x9E3779B97F4A7C15L, 31);
+    }
+
+    // Murmur3's finalizer, so every input bit reaches both the filter's word and bit choices
+    private static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    // The filter already uses the high bits; the table takes the middle ones
+    private static int hash(long fingerprint) {
+        return (int) (fingerprint >>> 20);
+    }
+}
@@ -0,0 +1,122 @@
+// IdIndex.java
+import java.util.Arrays;
+
+/**
+ * Primary-key index from transaction id to store slot.
+ * Open addressing with linear probing over primitive arrays, so lookups
+ * never box. Deletes leave tombstones that keep probe chains intact; the
+ * table is rehashed (compacting the tombstones away) once they pile up.
+ */
+public class IdIndex {
+    private static final int EMPTY = 0;
+    private static final int FULL = 1;
+    private static final int TOMBSTONE = 2;
+    private static final int MIN_CAPACITY = 16;
+    
+    private int[] keys = new int[MIN_CAPACITY];
+    private int[] values = new int[MIN_CAPACITY];
+    private byte[] states = new byte[MIN_CAPACITY];
+    private int size;
+    private int tombstones;
+    
+    // Slot for the id, or -1
+    public int get(int id) {
+        int mask = keys.length - 1;
+        for (int index = hash(id) & mask; ; index = (index + 1) & mask) {
+            if (states[index] == EMPTY) {
+                return -1;
+            }
+            if (states[index] == FULL && keys[index] == id) {
+                return values[index];
+            }
+        }
+    }
+    
+    public void put(int id, int slot) {
+        if ((size + tombstones + 1) * 4 > keys.length * 3) {
+            rehash(size * 4 > keys.length ? keys.length * 2 : keys.length);
+        }
+        
+        int mask = keys.length - 1;
+        int reusable = -1;
+        for (int index = hash(id) & mask; ; index = (index + 1) & mask) {
+            if (states[index] == FULL && keys[index] == id) {
+                values[index] = slot;
+                return;
+            }
+            if (states[index] == TOMBSTONE && reusable < 0) {
+                reusable = index;
+            }
+            if (states[index] == EMPTY) {
+                if (reusable >= 0) {
+                    index = reusable;
+                    tombstones--;
+                }
+                keys[index] = id;
+                values[index] = slot;
+                states[index] = FULL;
+                size++;
+                return;
+            }
+        }
+    }
+    
+    // Removes the id and returns its slot, or -1 if absent
+    public int remove(int id) {
+        int mask = keys.length - 1;
+        for (int index = hash(id) & mask; ; index = (index + 1) & mask) {
+            if (states[index] == EMPTY) {
+                return -1;
+            }
+            if (states[index] == FULL && keys[index] == id) {
+                states[index] = TOMBSTONE;
+                size--;
+                tombstones++;
+                return values[index];
+            }
+        }
+    }
+    
+    public IdIndex copy() {
+        IdIndex copy = new IdIndex();
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.states = states.clone();
+        copy.size = size;
+        copy.tombstones = tombstones;
+        return copy;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public void clear() {
+        Arrays.fill(states, (byte) EMPTY);
+        size = 0;
+        tombstones = 0;
+    }
+    
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        byte[] oldStates = states;
+        
+        keys = new int[capacity];
+        values = new int[capacity];
+        states = new byte[capacity];
+        size = 0;
+        tombstones = 0;
+        for (int i = 0; i < oldStates.length; i++) {
+            if (oldStates[i] == FULL) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+    
+    // Sequential ids would cluster under identity hashing, so spread the bits
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,8 @@
+// ImportProgressListener.java
+
+/**
+ * Receives progress updates while a bulk import runs.
+ */
+public interface ImportProgressListener {
+    void onProgress(long rowsRead, long rowsImported, long rowsRejected);
+}
@@ -0,0 +1,53 @@
+// ImportResult.java
+
+/**
+ * Outcome of a bulk import: how many rows were read, imported, rejected or
+ * found to duplicate stored ones, and how long it took. Depending on the
+ * duplicate policy, duplicates were skipped, merged or imported anyway.
+ */
+public class ImportResult {
+    private final long readCount;
+    private final long importedCount;
+    private final long rejectedCount;
+    private final long duplicateCount;
+    private final long elapsedNanos;
+    
+    public ImportResult(long readCount, long importedCount, long rejectedCount, long duplicateCount, 
+                        long elapsedNanos) {
+        this.readCount = readCount;
+        this.importedCount = importedCount;
+        this.rejectedCount = rejectedCount;
+        this.duplicateCount = duplicateCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+    
+    public long getReadCount() {
+        return readCount;
+    }
+    
+    public long getImportedCount() {
+        return importedCount;
+    }
+    
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+    
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+    
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+    
+    public double getRowsPerSecond() {
+        return elapsedNanos > 0 ? readCount * 1e9 / elapsedNanos : 0;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("Imported %d rows, rejected %d, %d duplicates, in %d ms (%.0f rows/s)", 
+                             importedCount, rejectedCount, duplicateCount, getElapsedMillis(), getRowsPerSecond());
+    }
+}
@@ -0,0 +1,282 @@
+// LedgerAnalytics.java
+import java.time.DayOfWeek;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Count, sum, min, max and mean of transaction amounts by category, month
+ * and weekday, each split by type, computed in one fork-join pass over the
+ * store's columns. Every leaf task fills its own primitive accumulators and
+ * results are merged pairwise on the way back up, so workers share nothing
+ * while scanning. The result is detached from the tracker.
+ */
+public class LedgerAnalytics {
+    private static final int TYPE_COUNT = Transaction.TransactionType.values().length;
+    private static final int WEEKDAYS = 7;
+    private static final int MIN_LEAF_ROWS = 32_768;
+
+    private final String[] categories;
+    private final int firstMonthKey;
+    private final Accumulator result;
+
+    private LedgerAnalytics(String[] categories, int firstMonthKey, Accumulator result) {
+        this.categories = categories;
+        this.firstMonthKey = firstMonthKey;
+        this.result = result;
+    }
+
+    /**
+     * Aggregates the live rows dated within [fromEpochDay, toEpochDay].
+     * The caller must keep the store unchanged until this returns.
+     */
+    static LedgerAnalytics compute(TransactionStore store, int fromEpochDay, int toEpochDay) {
+        return compute(store, 0, store.slotCount(), fromEpochDay, toEpochDay);
+    }
+
+    /**
+     * As above, scanning only slots [fromSlot, toSlot), which must hold
+     * every row in the date range.
+     */
+    static LedgerAnalytics compute(TransactionStore store, int fromSlot, int toSlot,
+                                   int fromEpochDay, int toEpochDay) {
+        StringDictionary dictionary = store.getCategoryDictionary();
+        String[] categories = new String[dictionary.codeLimit()];
+        for (int code = 0; code < categories.length; code++) {
+            categories[code] = dictionary.valueOf(code);
+        }
+
+        int firstMonthKey = MonthlyAggregateIndex.monthKeyOfEpochDay(fromEpochDay);
+        int monthCount = fromEpochDay <= toEpochDay
+                         ? MonthlyAggregateIndex.monthKeyOfEpochDay(toEpochDay) - firstMonthKey + 1 : 0;
+        Shape shape = new Shape(categories.length, monthCount);
+
+        int leafRows = Math.max(MIN_LEAF_ROWS, (toSlot - fromSlot) / (ForkJoinPool.getCommonPoolParallelism() * 4) + 1);
+        Accumulator result = monthCount == 0 ? new Accumulator(shape)
+                : ForkJoinPool.commonPool().invoke(new ScanTask(store, shape, fromEpochDay, toEpochDay,
+                                                                firstMonthKey, fromSlot, toSlot, leafRows));
+        return new LedgerAnalytics(categories, firstMonthKey, result);
+    }
+
+    public AggregateStats total(Transaction.TransactionType type) {
+        long count = 0;
+        long sum = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int weekday = 0; weekday < WEEKDAYS; weekday++) {
+            int cell = result.shape.weekdayCell(weekday, type.ordinal());
+            count += result.counts[cell];
+            sum += result.sums[cell];
+            min = Math.min(min, result.mins[cell]);
+            max = Math.max(max, result.maxes[cell]);
+        }
+        return stats(count, sum, min, max);
+    }
+
+    public AggregateStats forCategory(String category, Transaction.TransactionType type) {
+        for (int code = 0; code < categories.length; code++) {
+            if (category.equals(categories[code])) {
+                return result.stats(result.shape.categoryCell(code, type.ordinal()));
+            }
+        }
+        return AggregateStats.EMPTY;
+    }
+
+    // Categories with at least one row of the given type, largest sum first
+    public Map<String, AggregateStats> byCategory(Transaction.TransactionType type) {
+        Integer[] codes = new Integer[categories.length];
+        int used = 0;
+        for (int code = 0; code < categories.length; code++) {
+            if (result.counts[result.shape.categoryCell(code, type.ordinal())] > 0) {
+                codes[used++] = code;
+            }
+        }
+        Arrays.sort(codes, 0, used, (a, b) -> Long.compare(result.sums[result.shape.categoryCell(b, type.ordinal())],
+                                                           result.sums[result.shape.categoryCell(a, type.ordinal())]));
+        Map<String, AggregateStats> map = new LinkedHashMap<>();
+        for (int i = 0; i < used; i++) {
+            map.put(categories[codes[i]], result.stats(result.shape.categoryCell(codes[i], type.ordinal())));
+        }
+        return map;
+    }
+
+    // Income minus expenses per category, for every category with rows in range
+    public Map<String, Money> netByCategory() {
+        Map<String, Money> map = new LinkedHashMap<>();
+        int income = Transaction.TransactionType.INCOME.ordinal();
+        int expense = Transaction.TransactionType.EXPENSE.ordinal();
+        for (int code = 0; code < categories.length; code++) {
+            int incomeCell = result.shape.categoryCell(code, income);
+            int expenseCell = result.shape.categoryCell(code, expense);
+            if (result.counts[incomeCell] + result.counts[expenseCell] > 0) {
+                map.put(categories[code], Money.ofMinor(result.sums[incomeCell] - result.sums[expenseCell]));
+            }
+        }
+        return map;
+    }
+
+    public AggregateStats forMonth(YearMonth month, Transaction.TransactionType type) {
+        int index = MonthlyAggregateIndex.monthKey(month) - firstMonthKey;
+        if (index < 0 || index >= result.shape.monthCount) {
+            return AggregateStats.EMPTY;
+        }
+        return result.stats(result.shape.monthCell(index, type.ordinal()));
+    }
+
+    // Every month in range, oldest first, including empty ones
+    public Map<YearMonth, AggregateStats> byMonth(Transaction.TransactionType type) {
+        Map<YearMonth, AggregateStats> map = new LinkedHashMap<>();
+        for (int index = 0; index < result.shape.monthCount; index++) {
+            map.put(MonthlyAggregateIndex.toYearMonth(firstMonthKey + index),
+                    result.stats(result.shape.monthCell(index, type.ordinal())));
+        }
+        return map;
+    }
+
+    public AggregateStats forWeekday(DayOfWeek day, Transaction.TransactionType type) {
+        return result.stats(result.shape.weekdayCell(day.ordinal(), type.ordinal()));
+    }
+
+    // Monday first
+    public Map<DayOfWeek, AggregateStats> byWeekday(Transaction.TransactionType type) {
+        Map<DayOfWeek, AggregateStats> map = new LinkedHashMap<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            map.put(day, forWeekday(day, type));
+        }
+        return map;
+    }
+
+    private static AggregateStats stats(long count, long sum, long min, long max) {
+        return count == 0 ? AggregateStats.EMPTY : new AggregateStats(count, sum, min, max);
+    }
+
+    // Epoch day 0 (1970-01-01) was a Thursday; Monday is 0
+    static int weekdayOfEpochDay(int epochDay) {
+        return Math.floorMod(epochDay + 3, WEEKDAYS);
+    }
+
+    /**
+     * Cell layout shared by all accumulators of one computation:
+     * categories, then months, then weekdays, each times the type count.
+     */
+    private static class Shape {
+        final int categoryCount;
+        final int monthCount;
+        final int cells;
+
+        Shape(int categoryCount, int monthCount) {
+            this.categoryCount = categoryCount;
+            this.monthCount = monthCount;
+            this.cells = (categoryCount + monthCount + WEEKDAYS) * TYPE_COUNT;
+        }
+
+        int categoryCell(int code, int type) {
+            return code * TYPE_COUNT + type;
+        }
+
+        int monthCell(int index, int type) {
+            return (categoryCount + index) * TYPE_COUNT + type;
+        }
+
+        int weekdayCell(int weekday, int type) {
+            return (categoryCount + monthCount + weekday) * TYPE_COUNT + type;
+        }
+    }
+
+    private static class Accumulator {
+        final Shape shape;
+        final long[] counts;
+        final long[] sums;
+        final long[] mins;
+        final long[] maxes;
+
+        Accumulator(Shape shape) {
+            this.shape = shape;
+            this.counts = new long[shape.cells];
+            this.sums = new long[shape.cells];
+            this.mins = new long[shape.cells];
+            this.maxes = new long[shape.cells];
+            Arrays.fill(mins, Long.MAX_VALUE);
+            Arrays.fill(maxes, Long.MIN_VALUE);
+        }
+
+        void add(int cell, long amount) {
+            counts[cell]++;
+            sums[cell] += amount;
+            if (amount < mins[cell]) {
+                mins[cell] = amount;
+            }
+            if (amount > maxes[cell]) {
+                maxes[cell] = amount;
+            }
+        }
+
+        Accumulator merge(Accumulator other) {
+            for (int cell = 0; cell < counts.length; cell++) {
+                counts[cell] += other.counts[cell];
+                sums[cell] += other.sums[cell];
+                mins[cell] = Math.min(mins[cell], other.mins[cell]);
+                maxes[cell] = Math.max(maxes[cell], other.maxes[cell]);
+            }
+            return this;
+        }
+
+        AggregateStats stats(int cell) {
+            return LedgerAnalytics.stats(counts[cell], sums[cell], mins[cell], maxes[cell]);
+        }
+    }
+
+    private static class ScanTask extends RecursiveTask<Accumulator> {
+        private static final long serialVersionUID = 1L;
+
+        private final TransactionStore store;
+        private final Shape shape;
+        private final int fromDay;
+        private final int toDay;
+        private final int firstMonthKey;
+        private final int start;
+        private final int end;
+        private final int leafRows;
+
+        ScanTask(TransactionStore store, Shape shape, int fromDay, int toDay, int firstMonthKey,
+                 int start, int end, int leafRows) {
+            this.store = store;
+            this.shape = shape;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.firstMonthKey = firstMonthKey;
+            this.start = start;
+            this.end = end;
+            this.leafRows = leafRows;
+        }
+
+        @Override
+        protected Accumulator compute() {
+            if (end - start > leafRows) {
+                int middle = (start + end) >>> 1;
+                ScanTask left = new ScanTask(store, shape, fromDay, toDay, firstMonthKey, start, middle, leafRows);
+                ScanTask right = new ScanTask(store, shape, fromDay, toDay, firstMonthKey, middle, end, leafRows);
+                left.fork();
+                Accumulator rightResult = right.compute();
+                return left.join().merge(rightResult);
+            }
+
+            Accumulator accumulator = new Accumulator(shape);
+            for (int slot = start; slot < end; slot++) {
+                int type = store.typeCodeAt(slot);
+                int day = store.epochDayAt(slot);
+                if (type == TransactionStore.DELETED || day < fromDay || day > toDay) {
+                    continue;
+                }
+                long amount = store.amountAt(slot);
+                accumulator.add(shape.categoryCell(store.categoryCodeAt(slot), type), amount);
+                accumulator.add(shape.monthCell(MonthlyAggregateIndex.monthKeyOfEpochDay(day) - firstMonthKey, type), amount);
+                accumulator.add(shape.weekdayCell(weekdayOfEpochDay(day), type), amount);
+            }
+            return accumulator;
+        }
+    }
+}
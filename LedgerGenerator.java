@@ -0,0 +1,60 @@
+// LedgerGenerator.java
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic ledgers for benchmarks.
+ * The same row count and seed always produce the same rows: a few years
+ * of dated transactions over a fixed set of categories, with a vocabulary
+ * of descriptions that repeat the way real bank statements do.
+ */
+public class LedgerGenerator {
+    public static final long DEFAULT_SEED = 42L;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+    private static final int DAY_SPAN = 5 * 365;
+    private static final String[] EXPENSE_CATEGORIES = {
+        "Food", "Groceries", "Transportation", "Rent", "Utilities", "Entertainment",
+        "Health", "Insurance", "Travel", "Shopping", "Education", "Gifts"
+    };
+    private static final String[] INCOME_CATEGORIES = {"Salary", "Freelance", "Interest", "Refund"};
+    private static final String[] MERCHANTS = {
+        "corner market", "city metro", "fuel station", "coffee house", "book store", "pharmacy",
+        "cinema", "online shop", "power company", "water board", "landlord", "airline",
+        "hotel", "gym", "restaurant", "bakery", "employer payroll", "client invoice"
+    };
+
+    private final SplittableRandom random;
+    private int nextId = 1;
+
+    public LedgerGenerator(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    // Next row; ids count up from 1 and dates fall within the five years from 2020
+    public Transaction next() {
+        boolean income = random.nextInt(10) == 0;
+        String category = income ? INCOME_CATEGORIES[random.nextInt(INCOME_CATEGORIES.length)]
+                                 : EXPENSE_CATEGORIES[random.nextInt(EXPENSE_CATEGORIES.length)];
+        String description = MERCHANTS[random.nextInt(MERCHANTS.length)] + " #" + random.nextInt(1000);
+        long cents = income ? 50_000 + random.nextInt(500_000) : 100 + random.nextInt(40_000);
+        LocalDate date = FIRST_DAY.plusDays(random.nextInt(DAY_SPAN));
+
+        return new Transaction(nextId++, description, Money.ofMinor(cents), category,
+                               income ? Transaction.TransactionType.INCOME : Transaction.TransactionType.EXPENSE, date);
+    }
+
+    // Writes rows in the data-file CSV layout, header included
+    public void writeCsv(File file, int rows) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+            writer.write("id,description,amount,category,type,date");
+            writer.newLine();
+            for (int i = 0; i < rows; i++) {
+                writer.write(next().toCSV());
+                writer.newLine();
+            }
+        }
+    }
+}
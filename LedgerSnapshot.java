@@ -0,0 +1,84 @@
+// LedgerSnapshot.java
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable point-in-time copy of the ledger for reporting threads.
+ * Later changes to the tracker are not visible here, and reading a
+ * snapshot takes no locks.
+ */
+public class LedgerSnapshot {
+    private final TransactionStore store;
+    
+    LedgerSnapshot(TransactionStore store) {
+        this.store = store;
+    }
+    
+    public int getTransactionCount() {
+        return store.size();
+    }
+    
+    public Money getTotalIncome() {
+        return Money.ofMinor(store.totalOf(Transaction.TransactionType.INCOME));
+    }
+    
+    public Money getTotalExpenses() {
+        return Money.ofMinor(store.totalOf(Transaction.TransactionType.EXPENSE));
+    }
+    
+    public Money getBalance() {
+        return Money.ofMinor(store.totalOf(Transaction.TransactionType.INCOME)
+                             - store.totalOf(Transaction.TransactionType.EXPENSE));
+    }
+    
+    // Detached copies; editing them does not affect the tracker
+    public List<Transaction> getTransactions() {
+        List<Transaction> result = new ArrayList<>(store.size());
+        for (int slot = 0; slot < store.slotCount(); slot++) {
+            if (store.isLive(slot)) {
+                result.add(store.toTransaction(slot));
+            }
+        }
+        return result;
+    }
+    
+    public Money getMonthlyTotal(YearMonth month, Transaction.TransactionType type) {
+        int from = (int) month.atDay(1).toEpochDay();
+        int to = (int) month.atEndOfMonth().toEpochDay();
+        byte code = (byte) type.ordinal();
+        long total = 0;
+        for (int slot = 0; slot < store.slotCount(); slot++) {
+            int date = store.epochDayAt(slot);
+            if (store.typeCodeAt(slot) == code && date >= from && date <= to) {
+                total += store.amountAt(slot);
+            }
+        }
+        return Money.ofMinor(total);
+    }
+    
+    // Expense totals per category over the months from..to inclusive
+    public Map<String, Money> getExpensesByCategory(YearMonth from, YearMonth to) {
+        int fromDay = (int) from.atDay(1).toEpochDay();
+        int toDay = (int) to.atEndOfMonth().toEpochDay();
+        byte code = (byte) Transaction.TransactionType.EXPENSE.ordinal();
+        long[] totals = new long[store.getCategoryDictionary().codeLimit()];
+        for (int slot = 0; slot < store.slotCount(); slot++) {
+            int date = store.epochDayAt(slot);
+            if (store.typeCodeAt(slot) == code && date >= fromDay && date <= toDay) {
+                totals[store.categoryCodeAt(slot)] += store.amountAt(slot);
+            }
+        }
+        
+        Map<String, Money> result = new HashMap<>();
+        for (int category = 0; category < totals.length; category++) {
+            if (totals[category] != 0) {
+                result.put(store.getCategoryDictionary().valueOf(category), 
+                           Money.ofMinor(totals[category]));
+            }
+        }
+        return result;
+    }
+}
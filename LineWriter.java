@@ -0,0 +1,64 @@
+// LineWriter.java
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Buffered line output that reuses one StringBuilder and one char buffer,
+ * so writing a row costs no String allocation. Not thread-safe.
+ */
+public class LineWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Writer writer;
+    private final StringBuilder line = new StringBuilder(128);
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int buffered;
+
+    public LineWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    // The shared line builder, cleared; fill it and then call endLine()
+    public StringBuilder line() {
+        line.setLength(0);
+        return line;
+    }
+
+    // Writes the current line followed by a newline
+    public void endLine() throws IOException {
+        int length = line.length();
+        if (length + 1 > BUFFER_SIZE - buffered) {
+            flushBuffer();
+        }
+        if (length + 1 > BUFFER_SIZE) {
+            writer.append(line).append('\n');
+            return;
+        }
+        line.getChars(0, length, buffer, buffered);
+        buffered += length;
+        buffer[buffered++] = '\n';
+    }
+
+    public void println(String text) throws IOException {
+        line().append(text);
+        endLine();
+    }
+
+    // Pushes buffered lines through to the underlying writer and flushes it
+    public void flush() throws IOException {
+        flushBuffer();
+        writer.flush();
+    }
+
+    public void close() throws IOException {
+        flushBuffer();
+        writer.close();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (buffered > 0) {
+            writer.write(buffer, 0, buffered);
+            buffered = 0;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+// Money.java
+import java.util.Currency;
+import java.util.Objects;
+
+/**
+ * Exact amount of money held as a long count of minor units (hundredths).
+ * Arithmetic is plain long math, so totals over any number of rows are
+ * exact. The currency is optional: an amount without one combines with
+ * any other, while two different currencies never mix. The ledger stores
+ * bare minor units, so FinanceTracker refuses amounts with a currency.
+ */
+public final class Money implements Comparable<Money> {
+    public static final Money ZERO = new Money(0, null);
+    private static final int FRACTION_DIGITS = 2;
+
+    private final long minorUnits;
+    private final Currency currency;
+
+    private Money(long minorUnits, Currency currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits, null);
+    }
+
+    public static Money ofMinor(long minorUnits, Currency currency) {
+        return currency == null ? ofMinor(minorUnits) : new Money(minorUnits, currency);
+    }
+
+    /**
+     * Parses a plain decimal such as "12", "-3.5" or "1204.99" exactly.
+     * Digits past the second decimal place are rounded half away from zero
+     * (RoundingMode.HALF_UP), so 0.125 reads as 0.13 and -0.125 as -0.13.
+     * Throws NumberFormatException for anything else, including overflow.
+     */
+    public static Money parse(String text) {
+        String trimmed = text.trim();
+        return ofMinor(parseMinorUnits(trimmed, 0, trimmed.length()));
+    }
+
+    public static Money parse(String text, Currency currency) {
+        String trimmed = text.trim();
+        return ofMinor(parseMinorUnits(trimmed, 0, trimmed.length()), currency);
+    }
+
+    // The minor units of text[from, end) read as parse() does, for callers splitting rows themselves
+    static long parseMinorUnits(CharSequence text, int from, int end) {
+        int position = from;
+        boolean negative = false;
+        if (position < end && (text.charAt(position) == '-' || text.charAt(position) == '+')) {
+            negative = text.charAt(position) == '-';
+            position++;
+        }
+
+        long value = 0;
+        int digits = 0;
+        int scale = -1;
+        boolean roundUp = false;
+        try {
+            for (; position < end; position++) {
+                char c = text.charAt(position);
+                if (c == '.' && scale < 0) {
+                    scale = 0;
+                } else if (c >= '0' && c <= '9') {
+                    digits++;
+                    if (scale < FRACTION_DIGITS) {
+                        value = Math.addExact(Math.multiplyExact(value, 10), c - '0');
+                        if (scale >= 0) {
+                            scale++;
+                        }
+                    } else if (scale == FRACTION_DIGITS) {
+                        roundUp = c >= '5';
+                        scale++;
+                    }
+                } else {
+                    throw new NumberFormatException("Invalid amount: " + text.subSequence(from, end));
+                }
+            }
+            for (int i = Math.max(scale, 0); i < FRACTION_DIGITS; i++) {
+                value = Math.multiplyExact(value, 10);
+            }
+            if (roundUp) {
+                value = Math.addExact(value, 1);
+            }
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text.subSequence(from, end));
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Invalid amount: " + text.subSequence(from, end));
+        }
+        return negative ? -value : value;
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    // Null when the amount has no currency attached
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public Money plus(Money other) {
+        return ofMinor(Math.addExact(minorUnits, other.minorUnits), commonCurrency(other));
+    }
+
+    public Money minus(Money other) {
+        return ofMinor(Math.subtractExact(minorUnits, other.minorUnits), commonCurrency(other));
+    }
+
+    public Money negate() {
+        return ofMinor(Math.negateExact(minorUnits), currency);
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    // Nearest double, for charting and other places where exactness does not matter
+    public double toDouble() {
+        return minorUnits / 100.0;
+    }
+
+    // Appends e.g. "-12.05", followed by " EUR" when a currency is set
+    public StringBuilder appendTo(StringBuilder out) {
+        TransactionFormat.appendAmount(out, minorUnits);
+        if (currency != null) {
+            out.append(' ').append(currency.getCurrencyCode());
+        }
+        return out;
+    }
+
+    private Currency commonCurrency(Money other) {
+        if (currency == null) {
+            return other.currency;
+        }
+        if (other.currency != null && !currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " and " + other.currency);
+        }
+        return currency;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        commonCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Money)) {
+            return false;
+        }
+        Money money = (Money) other;
+        return minorUnits == money.minorUnits && Objects.equals(currency, money.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits) * 31 + Objects.hashCode(currency);
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(24)).toString();
+    }
+}
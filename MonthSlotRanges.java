@@ -0,0 +1,67 @@
+// MonthSlotRanges.java
+import java.util.TreeMap;
+
+/**
+ * The span of store slots holding each month's rows, so a pass over a few
+ * months can scan just their stretch of the columns. Rows added in date
+ * order, as statements and loaded segments are, keep each span short.
+ * Spans only widen while a month has rows; removed rows leave a superset,
+ * which callers filter by date anyway. Compacting the store moves rows,
+ * so the owner rebuilds the spans afterwards.
+ */
+public class MonthSlotRanges {
+    private final TransactionStore store;
+    private final TreeMap<Integer, Span> months = new TreeMap<>();
+    
+    private static class Span {
+        int start;
+        int end;
+        int rowCount;
+        
+        Span(int slot) {
+            start = slot;
+            end = slot + 1;
+        }
+    }
+    
+    public MonthSlotRanges(TransactionStore store) {
+        this.store = store;
+    }
+    
+    public void add(int slot) {
+        int key = MonthlyAggregateIndex.monthKeyOfEpochDay(store.epochDayAt(slot));
+        Span span = months.computeIfAbsent(key, k -> new Span(slot));
+        span.start = Math.min(span.start, slot);
+        span.end = Math.max(span.end, slot + 1);
+        span.rowCount++;
+    }
+    
+    // A month left without rows forgets its span, so rows loaded later start a fresh one
+    public void remove(int slot) {
+        int key = MonthlyAggregateIndex.monthKeyOfEpochDay(store.epochDayAt(slot));
+        Span span = months.get(key);
+        if (span != null && --span.rowCount == 0) {
+            months.remove(key);
+        }
+    }
+    
+    public void rebuild() {
+        months.clear();
+        for (int slot = 0; slot < store.slotCount(); slot++) {
+            if (store.isLive(slot)) {
+                add(slot);
+            }
+        }
+    }
+    
+    // Slots [start, end) cover every row of months [fromKey, toKey]; {0, 0} when they have none
+    public int[] span(int fromKey, int toKey) {
+        int start = Integer.MAX_VALUE;
+        int end = 0;
+        for (Span span : months.subMap(fromKey, true, toKey, true).values()) {
+            start = Math.min(start, span.start);
+            end = Math.max(end, span.end);
+        }
+        return end > 0 ? new int[] {start, end} : new int[] {0, 0};
+    }
+}
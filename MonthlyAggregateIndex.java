@@ -0,0 +1,146 @@
+// MonthlyAggregateIndex.java
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-aggregated totals per month, category and transaction type.
+ * Updated on every mutation so monthly, ranged and yearly reports are
+ * answered without touching individual transactions.
+ * Months are keyed as year * 12 + (month - 1); categories by dictionary code.
+ */
+public class MonthlyAggregateIndex {
+    private static final int TYPE_COUNT = Transaction.TransactionType.values().length;
+    
+    private final Map<Integer, MonthBucket> months = new HashMap<>();
+    
+    private static class MonthBucket {
+        long[] sums = new long[8 * TYPE_COUNT];    // [categoryCode * TYPE_COUNT + type]
+        int[] counts = new int[8 * TYPE_COUNT];
+        final long[] typeTotals = new long[TYPE_COUNT];
+        final int[] typeCounts = new int[TYPE_COUNT];
+        int rowCount;
+        
+        void apply(int categoryCode, int type, long amount, int delta) {
+            int cell = categoryCode * TYPE_COUNT + type;
+            if (cell >= sums.length) {
+                int capacity = Math.max(sums.length * 2, cell + TYPE_COUNT);
+                sums = Arrays.copyOf(sums, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            sums[cell] += delta * amount;
+            counts[cell] += delta;
+            typeTotals[type] += delta * amount;
+            typeCounts[type] += delta;
+            rowCount += delta;
+        }
+    }
+    
+    public static int monthKey(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+    
+    public static YearMonth toYearMonth(int monthKey) {
+        return YearMonth.of(Math.floorDiv(monthKey, 12), Math.floorMod(monthKey, 12) + 1);
+    }
+    
+    // Civil-from-days conversion, so indexing a row never allocates a LocalDate
+    public static int monthKeyOfEpochDay(int epochDay) {
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 12 + month - 1;
+    }
+    
+    public void add(int epochDay, int categoryCode, int type, long amount) {
+        months.computeIfAbsent(monthKeyOfEpochDay(epochDay), key -> new MonthBucket())
+              .apply(categoryCode, type, amount, 1);
+    }
+    
+    public void remove(int epochDay, int categoryCode, int type, long amount) {
+        int key = monthKeyOfEpochDay(epochDay);
+        MonthBucket bucket = months.get(key);
+        if (bucket == null) {
+            return;
+        }
+        bucket.apply(categoryCode, type, amount, -1);
+        if (bucket.rowCount == 0) {
+            months.remove(key);
+        }
+    }
+    
+    public void clear() {
+        months.clear();
+    }
+    
+    public int count(int monthKey) {
+        MonthBucket bucket = months.get(monthKey);
+        return bucket != null ? bucket.rowCount : 0;
+    }
+    
+    // Total in minor units for the given type over months [fromKey, toKey]
+    public long total(int fromKey, int toKey, Transaction.TransactionType type) {
+        long total = 0;
+        for (MonthBucket bucket : bucketsInRange(fromKey, toKey)) {
+            total += bucket.typeTotals[type.ordinal()];
+        }
+        return total;
+    }
+    
+    // Total in minor units for one category and type over months [fromKey, toKey]
+    public long categoryTotal(int fromKey, int toKey, int categoryCode, Transaction.TransactionType type) {
+        long total = 0;
+        int cell = categoryCode * TYPE_COUNT + type.ordinal();
+        for (MonthBucket bucket : bucketsInRange(fromKey, toKey)) {
+            if (cell < bucket.sums.length) {
+                total += bucket.sums[cell];
+            }
+        }
+        return total;
+    }
+    
+    /**
+     * Totals in minor units indexed by category code for the given type over
+     * months [fromKey, toKey]; categoryLimit sizes the result array.
+     */
+    public long[] totalsByCategory(int fromKey, int toKey, Transaction.TransactionType type, int categoryLimit) {
+        long[] totals = new long[categoryLimit];
+        int typeIndex = type.ordinal();
+        for (MonthBucket bucket : bucketsInRange(fromKey, toKey)) {
+            for (int cell = typeIndex; cell < bucket.sums.length; cell += TYPE_COUNT) {
+                if (bucket.counts[cell] != 0) {
+                    totals[cell / TYPE_COUNT] += bucket.sums[cell];
+                }
+            }
+        }
+        return totals;
+    }
+    
+    // Visits whichever is smaller: the months in the range or the months with data
+    private List<MonthBucket> bucketsInRange(int fromKey, int toKey) {
+        List<MonthBucket> buckets = new ArrayList<>();
+        if ((long) toKey - fromKey + 1 <= months.size()) {
+            for (int key = fromKey; key <= toKey; key++) {
+                MonthBucket bucket = months.get(key);
+                if (bucket != null) {
+                    buckets.add(bucket);
+                }
+            }
+        } else {
+            for (Map.Entry<Integer, MonthBucket> entry : months.entrySet()) {
+                if (entry.getKey() >= fromKey && entry.getKey() <= toKey) {
+                    buckets.add(entry.getValue());
+                }
+            }
+        }
+        return buckets;
+    }
+}
@@ -0,0 +1,219 @@
+// ParallelCsvLoader.java
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Loads a transactions CSV by memory-mapping it, splitting it into
+ * newline-aligned chunks and parsing the chunks in parallel.
+ * Fields are split straight from the mapped bytes by the same
+ * CsvRowSplitter that Transaction.fromCSV uses.
+ */
+public class ParallelCsvLoader {
+    private static final int MIN_CHUNK_SIZE = 1 << 20;   // 1 MB
+    private static final int MAX_CHUNK_SIZE = 1 << 26;   // 64 MB, well under the 2 GB mapping limit
+    
+    /**
+     * Result of a load: the parsed transactions in id order plus the number of
+     * rows that could not be parsed.
+     */
+    public static class Result {
+        private final List<Transaction> transactions;
+        private final int rejectedCount;
+        
+        Result(List<Transaction> transactions, int rejectedCount) {
+            this.transactions = transactions;
+            this.rejectedCount = rejectedCount;
+        }
+        
+        public List<Transaction> getTransactions() {
+            return transactions;
+        }
+        
+        public int getRejectedCount() {
+            return rejectedCount;
+        }
+    }
+    
+    public static Result load(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long dataStart = startsWithHeader(channel, size) ? skipLine(channel, 0, size) : 0;
+            List<long[]> chunks = split(channel, dataStart, size);
+            
+            List<Result> parts = chunks.parallelStream()
+                    .map(chunk -> parseChunk(channel, chunk[0], chunk[1]))
+                    .collect(Collectors.toList());
+            
+            return merge(parts);
+        }
+    }
+    
+    private static List<long[]> split(FileChannel channel, long start, long end) throws IOException {
+        long length = end - start;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long target = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, length / threads + 1));
+        
+        List<long[]> chunks = new ArrayList<>();
+        long position = start;
+        while (position < end) {
+            long chunkEnd = Math.min(end, position + target);
+            if (chunkEnd < end) {
+                chunkEnd = skipLine(channel, chunkEnd, end);
+            }
+            chunks.add(new long[] {position, chunkEnd});
+            position = chunkEnd;
+        }
+        return chunks;
+    }
+    
+    // Files written by the tracker start with CSV_HEADER; hand-made ones may not have a header at all
+    private static boolean startsWithHeader(FileChannel channel, long size) throws IOException {
+        byte[] prefix = "id,".getBytes(StandardCharsets.US_ASCII);
+        if (size < prefix.length) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(prefix.length);
+        channel.read(buffer, 0);
+        return Arrays.equals(buffer.array(), prefix);
+    }
+    
+    // Returns the position just after the next newline at or after position
+    private static long skipLine(FileChannel channel, long position, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < end) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return end;
+    }
+    
+    private static Result parseChunk(FileChannel channel, long start, long end) {
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to map transactions file", e);
+        }
+        
+        RowParser parser = new RowParser(buffer);
+        List<Transaction> transactions = new ArrayList<>();
+        int rejected = 0;
+        int limit = buffer.limit();
+        int lineStart = 0;
+        
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd;
+            if (contentEnd > lineStart && buffer.get(contentEnd - 1) == '\r') {
+                contentEnd--;
+            }
+            
+            if (contentEnd > lineStart) {
+                Transaction transaction = parser.parse(lineStart, contentEnd);
+                if (transaction != null) {
+                    transactions.add(transaction);
+                } else {
+                    rejected++;
+                    System.err.println("Error parsing CSV line: " + parser.text(lineStart, contentEnd));
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        TrackerMetrics.get().rowsParsed(transactions.size());
+        TrackerMetrics.get().rowsRejected(rejected);
+        return new Result(transactions, rejected);
+    }
+    
+    private static Result merge(List<Result> parts) {
+        int total = 0;
+        int rejected = 0;
+        for (Result part : parts) {
+            total += part.transactions.size();
+            rejected += part.rejectedCount;
+        }
+        
+        List<Transaction> merged = new ArrayList<>(total);
+        int maxId = 0;
+        boolean sorted = true;
+        for (Result part : parts) {
+            for (Transaction transaction : part.transactions) {
+                if (transaction.getId() < maxId) {
+                    sorted = false;
+                }
+                maxId = Math.max(maxId, transaction.getId());
+                merged.add(transaction);
+            }
+        }
+        if (!sorted) {
+            merged.sort(Comparator.comparingInt(Transaction::getId));
+        }
+        
+        return new Result(merged, rejected);
+    }
+    
+    /**
+     * Parses rows straight from the mapped bytes with the splitter and field
+     * conversion Transaction.fromCSV uses, so both paths accept the same rows.
+     * One instance per chunk; reuses the splitter's buffers and category cache.
+     */
+    private static class RowParser implements CharSequence {
+        private final ByteBuffer buffer;
+        private final CsvRowSplitter row = new CsvRowSplitter(true);
+        
+        RowParser(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+        
+        Transaction parse(int start, int end) {
+            row.split(this, start, end);
+            try {
+                return Transaction.fromFields(row, false);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+        
+        String text(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(start + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+        // The buffer seen one byte per char, which CsvRowSplitter decodes as UTF-8
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(index) & 0xff);
+        }
+        
+        @Override
+        public int length() {
+            return buffer.limit();
+        }
+        
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text(start, end);
+        }
+    }
+}
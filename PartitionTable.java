@@ -0,0 +1,214 @@
+// PartitionTable.java
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * The tracker's view of its month partitions: which are in memory, which
+ * changed since the last save, and for those still only on disk, the
+ * manifest's counts and totals, so balances are answered without loading
+ * them. Also keeps the recency order used to evict cold months and the
+ * memoized reports of closed months. Changed under the tracker's write
+ * lock; the set of months itself may be walked without it.
+ */
+class PartitionTable {
+    static final class Entry {
+        final int monthKey;
+        // As last saved; null for a month that has never been saved
+        PartitionedLedger.Partition persisted;
+        boolean loaded;
+        boolean dirty;
+        // Tick of the last read that needed this month; set by readers, so volatile
+        volatile long lastUsed;
+        // Expense totals by category, kept for closed months once computed and dropped when the month changes
+        volatile Map<String, Long> expensesByCategory;
+
+        Entry(int monthKey) {
+            this.monthKey = monthKey;
+        }
+    }
+
+    private final ConcurrentSkipListMap<Integer, Entry> entries = new ConcurrentSkipListMap<>();
+    private volatile int unloadedCount;
+    private long unloadedRows;
+    private final long[] unloadedTotals = new long[Transaction.TransactionType.values().length];
+    private int maxId;
+    private final AtomicLong clock = new AtomicLong();
+
+    // A partition known from the manifest, not yet in memory
+    void addPersisted(PartitionedLedger.Partition partition) {
+        Entry entry = new Entry(partition.getMonthKey());
+        entry.persisted = partition;
+        entries.put(entry.monthKey, entry);
+        maxId = Math.max(maxId, partition.getMaxId());
+        unloadedCount++;
+        unloadedRows += partition.getRowCount();
+        for (Transaction.TransactionType type : Transaction.TransactionType.values()) {
+            unloadedTotals[type.ordinal()] += partition.getTotal(type);
+        }
+    }
+
+    void markLoaded(Entry entry) {
+        if (entry.loaded) {
+            return;
+        }
+        entry.loaded = true;
+        entry.lastUsed = clock.incrementAndGet();
+        unloadedCount--;
+        unloadedRows -= entry.persisted.getRowCount();
+        for (Transaction.TransactionType type : Transaction.TransactionType.values()) {
+            unloadedTotals[type.ordinal()] -= entry.persisted.getTotal(type);
+        }
+    }
+
+    // Back to disk-only after its rows were dropped from memory; must be clean
+    void markUnloaded(Entry entry) {
+        if (!entry.loaded) {
+            return;
+        }
+        entry.loaded = false;
+        unloadedCount++;
+        unloadedRows += entry.persisted.getRowCount();
+        for (Transaction.TransactionType type : Transaction.TransactionType.values()) {
+            unloadedTotals[type.ordinal()] += entry.persisted.getTotal(type);
+        }
+    }
+
+    // Records a read of the months from..to for the eviction order
+    void touch(int fromMonthKey, int toMonthKey) {
+        if (fromMonthKey <= toMonthKey) {
+            for (Entry entry : entries.subMap(fromMonthKey, true, toMonthKey, true).values()) {
+                entry.lastUsed = clock.incrementAndGet();
+            }
+        }
+    }
+
+    // Loaded month read longest ago among those the filter accepts, or null
+    Entry leastRecentlyUsed(Predicate<Entry> filter) {
+        Entry oldest = null;
+        for (Entry entry : entries.values()) {
+            if (entry.loaded && filter.test(entry) && (oldest == null || entry.lastUsed < oldest.lastUsed)) {
+                oldest = entry;
+            }
+        }
+        return oldest;
+    }
+
+    Entry get(int monthKey) {
+        return entries.get(monthKey);
+    }
+
+    // Flags the month as changed, adding it first if it had no rows before
+    void markDirty(int monthKey) {
+        Entry entry = entries.computeIfAbsent(monthKey, key -> {
+            Entry created = new Entry(key);
+            created.loaded = true;
+            return created;
+        });
+        entry.dirty = true;
+        entry.expensesByCategory = null;
+    }
+
+    void remove(int monthKey) {
+        entries.remove(monthKey);
+    }
+
+    Collection<Entry> entries() {
+        return entries.values();
+    }
+
+    Collection<Entry> entries(int fromMonthKey, int toMonthKey) {
+        return entries.subMap(fromMonthKey, true, toMonthKey, true).values();
+    }
+
+    boolean allLoaded() {
+        return unloadedCount == 0;
+    }
+
+    boolean allLoaded(int fromMonthKey, int toMonthKey, Predicate<Entry> needed) {
+        return unloadedCount == 0 || unloaded(fromMonthKey, toMonthKey, needed).isEmpty();
+    }
+
+    List<Entry> unloaded(int fromMonthKey, int toMonthKey) {
+        return unloaded(fromMonthKey, toMonthKey, entry -> true);
+    }
+
+    // Months from..to still on disk that the filter says the caller needs
+    List<Entry> unloaded(int fromMonthKey, int toMonthKey, Predicate<Entry> needed) {
+        List<Entry> result = new ArrayList<>();
+        if (unloadedCount > 0 && fromMonthKey <= toMonthKey) {
+            for (Entry entry : entries.subMap(fromMonthKey, true, toMonthKey, true).values()) {
+                if (!entry.loaded && needed.test(entry)) {
+                    result.add(entry);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Partitions on disk that may hold the id; ids are unique, so at most one actually does
+    List<Entry> unloadedCovering(int transactionId) {
+        List<Entry> result = new ArrayList<>();
+        if (unloadedCount > 0) {
+            for (Entry entry : entries.values()) {
+                if (!entry.loaded && entry.persisted.mayContain(transactionId)) {
+                    result.add(entry);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Oldest month such that it and the months after it hold at least rows
+     * rows, counting loaded months with loadedCount; the oldest month of all
+     * if the ledger holds fewer.
+     */
+    int newestMonthsHolding(long rows, IntUnaryOperator loadedCount) {
+        long seen = 0;
+        int month = Integer.MAX_VALUE;
+        for (Entry entry : entries.descendingMap().values()) {
+            month = entry.monthKey;
+            seen += entry.loaded ? loadedCount.applyAsInt(month) : entry.persisted.getRowCount();
+            if (seen >= rows) {
+                break;
+            }
+        }
+        return month;
+    }
+
+    // Nearest month with a partition at or before / at or after the given one, or null
+    Integer floorMonth(int monthKey) {
+        return entries.floorKey(monthKey);
+    }
+
+    Integer ceilingMonth(int monthKey) {
+        return entries.ceilingKey(monthKey);
+    }
+
+    long unloadedRows() {
+        return unloadedRows;
+    }
+
+    long unloadedTotal(Transaction.TransactionType type) {
+        return unloadedTotals[type.ordinal()];
+    }
+
+    long unloadedTotal(int fromMonthKey, int toMonthKey, Transaction.TransactionType type) {
+        long total = 0;
+        for (Entry entry : unloaded(fromMonthKey, toMonthKey)) {
+            total += entry.persisted.getTotal(type);
+        }
+        return total;
+    }
+
+    // Highest id in any saved partition, so new ids never collide with unloaded rows
+    int maxPersistedId() {
+        return maxId;
+    }
+}
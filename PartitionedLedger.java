@@ -0,0 +1,264 @@
+// PartitionedLedger.java
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk ledger split into one BinaryLedgerFormat segment per month, plus a
+ * small text manifest listing each segment's file, row count, id range and
+ * totals. Segments are never rewritten in place: a changed month is written
+ * under a new version and the manifest, replaced atomically, is the commit
+ * point, so a crash leaves either the old or the new set. Segments of months
+ * before the current one are sealed: marked read-only on disk, and only
+ * superseded by a new version if a late edit touches them.
+ */
+public class PartitionedLedger {
+    public static final String DIRECTORY = "ledger";
+    private static final String MANIFEST_FILE = "manifest";
+    private static final String MANIFEST_HEADER = "# PersonalFinanceTracker ledger manifest v1";
+    private static final String SEGMENT_SUFFIX = ".ledger";
+
+    /**
+     * Manifest entry for one month: what a partition holds without having to
+     * read it. Immutable.
+     */
+    public static final class Partition {
+        private final int monthKey;
+        private final int rowCount;
+        private final int minId;
+        private final int maxId;
+        private final long incomeTotal;
+        private final long expenseTotal;
+        private final boolean sealed;
+
+        Partition(int monthKey, int rowCount, int minId, int maxId, long incomeTotal, long expenseTotal,
+                  boolean sealed) {
+            this.monthKey = monthKey;
+            this.rowCount = rowCount;
+            this.minId = minId;
+            this.maxId = maxId;
+            this.incomeTotal = incomeTotal;
+            this.expenseTotal = expenseTotal;
+            this.sealed = sealed;
+        }
+
+        // Describes the given rows, which must all be dated in the month
+        static Partition of(int monthKey, TransactionStore rows) {
+            int minId = Integer.MAX_VALUE;
+            int maxId = Integer.MIN_VALUE;
+            for (int slot = 0; slot < rows.slotCount(); slot++) {
+                if (rows.isLive(slot)) {
+                    minId = Math.min(minId, rows.idAt(slot));
+                    maxId = Math.max(maxId, rows.idAt(slot));
+                }
+            }
+            return new Partition(monthKey, rows.size(), minId, maxId,
+                                 rows.totalOf(Transaction.TransactionType.INCOME),
+                                 rows.totalOf(Transaction.TransactionType.EXPENSE), isClosed(monthKey));
+        }
+
+        public int getMonthKey() {
+            return monthKey;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        public boolean mayContain(int transactionId) {
+            return rowCount > 0 && transactionId >= minId && transactionId <= maxId;
+        }
+
+        public int getMaxId() {
+            return maxId;
+        }
+
+        public long getTotal(Transaction.TransactionType type) {
+            return type == Transaction.TransactionType.INCOME ? incomeTotal : expenseTotal;
+        }
+
+        public boolean isSealed() {
+            return sealed;
+        }
+
+        Partition sealedIfClosed() {
+            return sealed || !isClosed(monthKey) ? this
+                   : new Partition(monthKey, rowCount, minId, maxId, incomeTotal, expenseTotal, true);
+        }
+    }
+
+    private final File directory;
+    private final File manifest;
+    // Segment file per month; read by loading threads, replaced only by commit()
+    private final Map<Integer, String> files = new ConcurrentHashMap<>();
+    // Partition as last committed per month, so callers can tell whether a copy in memory is safely on disk
+    private final Map<Integer, Partition> committed = new ConcurrentHashMap<>();
+    // Months whose last commit failed, retried with the next one; touched only by commit()
+    private final Map<Integer, TransactionStore> pending = new HashMap<>();
+    private long version;
+
+    public PartitionedLedger(File baseDirectory) {
+        this.directory = new File(baseDirectory, DIRECTORY);
+        this.manifest = new File(directory, MANIFEST_FILE);
+    }
+
+    public boolean exists() {
+        return manifest.exists();
+    }
+
+    /**
+     * Reads the manifest, oldest month first, and deletes segment files it
+     * does not reference (left behind by a crash mid-commit). Returns an
+     * empty list if there is no manifest yet.
+     */
+    public List<Partition> open() throws IOException {
+        List<Partition> partitions = new ArrayList<>();
+        if (!manifest.exists()) {
+            return partitions;
+        }
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(manifest), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if (!MANIFEST_HEADER.equals(line)) {
+                throw new IOException("Not a ledger manifest: " + manifest);
+            }
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                try {
+                    if (fields[0].equals("version")) {
+                        version = Long.parseLong(fields[1]);
+                        continue;
+                    }
+                    int monthKey = MonthlyAggregateIndex.monthKey(YearMonth.parse(fields[0]));
+                    Partition partition = new Partition(monthKey, Integer.parseInt(fields[2]),
+                                                        Integer.parseInt(fields[3]), Integer.parseInt(fields[4]),
+                                                        Long.parseLong(fields[5]), Long.parseLong(fields[6]),
+                                                        fields[7].equals("sealed"));
+                    files.put(monthKey, fields[1]);
+                    committed.put(monthKey, partition);
+                    partitions.add(partition);
+                } catch (RuntimeException e) {
+                    throw new IOException("Corrupt manifest line: " + line);
+                }
+            }
+        }
+        partitions.sort(Comparator.comparingInt(Partition::getMonthKey));
+
+        Set<String> referenced = new HashSet<>(files.values());
+        File[] present = directory.listFiles();
+        for (File file : present != null ? present : new File[0]) {
+            if (!file.getName().equals(MANIFEST_FILE) && !referenced.contains(file.getName())) {
+                delete(file);
+            }
+        }
+        return partitions;
+    }
+
+    // Decodes one month's segment into the sink and returns its row count
+    public int load(int monthKey, BinaryLedgerFormat.RowSink sink) throws IOException {
+        String name = files.get(monthKey);
+        return name == null ? 0 : BinaryLedgerFormat.read(new File(directory, name), sink);
+    }
+
+    /**
+     * Writes a new version of each changed month, then a manifest describing
+     * all partitions, then drops the superseded segments. A month whose
+     * changed rows are empty is removed. Months from a failed commit are
+     * written again by the next one. Not thread-safe; run on one thread.
+     */
+    public void commit(List<Partition> partitions, Map<Integer, TransactionStore> changed) throws IOException {
+        pending.putAll(changed);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+
+        long next = version + 1;
+        Map<Integer, String> written = new HashMap<>();
+        for (Map.Entry<Integer, TransactionStore> month : pending.entrySet()) {
+            if (month.getValue().size() > 0) {
+                String name = MonthlyAggregateIndex.toYearMonth(month.getKey()) + "-v" + next + SEGMENT_SUFFIX;
+                BinaryLedgerFormat.write(month.getValue(), new File(directory, name));
+                written.put(month.getKey(), name);
+            }
+        }
+
+        StringBuilder text = new StringBuilder(MANIFEST_HEADER).append('\n');
+        text.append("version,").append(next).append('\n');
+        Map<Integer, String> current = new HashMap<>();
+        Map<Integer, Partition> described = new HashMap<>();
+        List<Partition> sealing = new ArrayList<>();
+        for (Partition partition : partitions) {
+            Partition entry = partition.sealedIfClosed();
+            String name = pending.containsKey(entry.monthKey) ? written.get(entry.monthKey) : files.get(entry.monthKey);
+            if (name == null || entry.rowCount == 0) {
+                continue;
+            }
+            current.put(entry.monthKey, name);
+            described.put(entry.monthKey, partition);
+            if (entry.sealed) {
+                sealing.add(entry);
+            }
+            text.append(MonthlyAggregateIndex.toYearMonth(entry.monthKey)).append(',').append(name)
+                .append(',').append(entry.rowCount).append(',').append(entry.minId).append(',').append(entry.maxId)
+                .append(',').append(entry.incomeTotal).append(',').append(entry.expenseTotal)
+                .append(',').append(entry.sealed ? "sealed" : "open").append('\n');
+        }
+        writeManifest(text.toString());
+
+        Set<String> superseded = new HashSet<>(files.values());
+        superseded.removeAll(current.values());
+        files.keySet().retainAll(current.keySet());
+        files.putAll(current);
+        committed.keySet().retainAll(described.keySet());
+        committed.putAll(described);
+        version = next;
+        pending.clear();
+
+        for (String name : superseded) {
+            delete(new File(directory, name));
+        }
+        for (Partition partition : sealing) {
+            File segment = new File(directory, current.get(partition.monthKey));
+            if (segment.canWrite() && !segment.setReadOnly()) {
+                System.err.println("Unable to seal " + segment);
+            }
+        }
+    }
+
+    // Whether the partition, as handed to commit() or returned by open(), is the one on disk now
+    public boolean isCommitted(Partition partition) {
+        return committed.get(partition.getMonthKey()) == partition;
+    }
+
+    // Months before the current one take no more regular activity
+    static boolean isClosed(int monthKey) {
+        return monthKey < MonthlyAggregateIndex.monthKey(YearMonth.now());
+    }
+
+    private void writeManifest(String text) throws IOException {
+        File temp = new File(directory, MANIFEST_FILE + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(temp)) {
+            output.write(text.getBytes(StandardCharsets.UTF_8));
+            output.getFD().sync();
+        }
+        TrackerMetrics.get().bytesWritten(temp.length());
+        Files.move(temp.toPath(), manifest.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Sealed segments are read-only, which some platforms honor for deletes too
+    private static void delete(File file) {
+        file.setWritable(true);
+        if (file.exists() && !file.delete()) {
+            System.err.println("Unable to delete " + file);
+        }
+    }
+}
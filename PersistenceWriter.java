@@ -0,0 +1,262 @@
+// PersistenceWriter.java
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Background writer that owns the journal and snapshot files. Mutating
+ * threads hand it rendered journal records and snapshot tasks through a
+ * queue and get back a sequence number; the writer drains whatever has
+ * piled up and writes it as one group commit, with a single flush and at
+ * most one fsync. Queuing never blocks, so callers may hold their own
+ * locks; when the disk falls behind, commit() holds each caller back until
+ * the writer is within the queue capacity of its entry. The thread starts
+ * on the first write.
+ */
+public class PersistenceWriter {
+    public enum Durability {
+        // Each mutation waits until its record is fsynced; concurrent writers share the fsync
+        PER_OPERATION,
+        // Mutations return once queued; every group is fsynced as soon as it is written
+        BATCHED,
+        // Records reach the OS as written; fsync happens only on flush() and close()
+        ON_SHUTDOWN
+    }
+
+    // Saves state captured when it was queued, replacing the previous snapshot atomically
+    public interface SnapshotTask {
+        void write() throws IOException;
+    }
+
+    private static final int GROUP_LIMIT = 1024;
+
+    private final TransactionJournal journal;
+    private final Durability durability;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    // Entries a caller may run ahead of the writer before commit() waits
+    private final int capacity;
+    // Keeps sequence numbers in queue order; the writer thread never takes it
+    private final Object enqueueLock = new Object();
+    private Thread thread;
+    private long lastSequence;
+    private boolean closed;
+    // Guarded by this
+    private long completedSequence;
+    private IOException failure;
+    private long failureSequence;
+
+    public PersistenceWriter(TransactionJournal journal, Durability durability, int queueCapacity) {
+        this.journal = journal;
+        this.durability = durability;
+        this.capacity = Math.max(1, queueCapacity);
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public long append(String record) {
+        return enqueue(new Entry(record, null, null, false, false));
+    }
+
+    // Queues a batch as one entry so it is always written within a single group
+    public long appendAll(List<String> records) {
+        return enqueue(new Entry(null, records, null, false, false));
+    }
+
+    // Once written, the snapshot covers every record queued before it and the journal is truncated
+    public long snapshot(SnapshotTask task) {
+        return enqueue(new Entry(null, null, task, false, false));
+    }
+
+    /**
+     * Called by a mutating thread after it has released its locks: waits for
+     * the given sequence to be fsynced in PER_OPERATION mode; otherwise waits
+     * only while the writer is more than the queue capacity behind it, which
+     * keeps the queue bounded by the capacity plus one entry per writer.
+     * Throws if the group holding the record could not be written.
+     */
+    public void commit(long sequence) throws IOException {
+        if (durability == Durability.PER_OPERATION) {
+            await(sequence);
+        } else {
+            synchronized (this) {
+                waitFor(sequence - capacity);
+            }
+        }
+    }
+
+    // Waits until the given sequence has been written, failing if it or a later group was not
+    public void await(long sequence) throws IOException {
+        synchronized (this) {
+            waitFor(sequence);
+            if (failure != null && failureSequence >= sequence) {
+                throw new IOException(failure.getMessage(), failure);
+            }
+        }
+    }
+
+    /**
+     * Writes and fsyncs everything queued so far, whatever the durability
+     * mode, and reports the first error since the previous flush, if any.
+     */
+    public void flush() throws IOException {
+        long sequence;
+        synchronized (enqueueLock) {
+            if (thread == null || closed) {
+                sequence = lastSequence;
+            } else {
+                sequence = enqueueLocked(new Entry(null, null, null, true, false));
+            }
+        }
+        drain(sequence);
+    }
+
+    // Drains the queue, fsyncs and closes the journal and stops the thread; later writes fail
+    public void close() throws IOException {
+        long sequence;
+        synchronized (enqueueLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (thread == null) {
+                journal.close();
+                return;
+            }
+            sequence = enqueueLocked(new Entry(null, null, null, true, true));
+        }
+        drain(sequence);
+    }
+
+    // Waits for the sequence and reports, then clears, any error since the last drain
+    private void drain(long sequence) throws IOException {
+        synchronized (this) {
+            waitFor(sequence);
+            IOException error = failure;
+            failure = null;
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    private long enqueue(Entry entry) {
+        synchronized (enqueueLock) {
+            if (closed) {
+                throw new IllegalStateException("Ledger is closed");
+            }
+            if (thread == null) {
+                thread = new Thread(this::run, "ledger-writer");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            return enqueueLocked(entry);
+        }
+    }
+
+    // Never blocks, so the sequence order is the queue order
+    private long enqueueLocked(Entry entry) {
+        entry.sequence = ++lastSequence;
+        queue.add(entry);
+        return entry.sequence;
+    }
+
+    private void waitFor(long sequence) {
+        boolean interrupted = false;
+        while (completedSequence < sequence) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Entry> group = new ArrayList<>(GROUP_LIMIT);
+        boolean stopped = false;
+        while (!stopped) {
+            group.clear();
+            try {
+                group.add(queue.take());
+            } catch (InterruptedException e) {
+                continue; // Only close() stops the writer
+            }
+            queue.drainTo(group, GROUP_LIMIT - 1);
+
+            IOException error = null;
+            boolean sync = durability != Durability.ON_SHUTDOWN;
+            for (Entry entry : group) {
+                try {
+                    write(entry);
+                } catch (IOException e) {
+                    error = e;
+                }
+                sync |= entry.sync;
+                stopped |= entry.stop;
+            }
+
+            try {
+                if (stopped) {
+                    journal.close();
+                } else if (sync) {
+                    journal.sync();
+                } else {
+                    journal.flush();
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+            complete(group.get(group.size() - 1).sequence, error);
+        }
+    }
+
+    private void write(Entry entry) throws IOException {
+        if (entry.record != null) {
+            journal.write(entry.record);
+        } else if (entry.records != null) {
+            for (String record : entry.records) {
+                journal.write(record);
+            }
+        } else if (entry.snapshot != null) {
+            // The journal is only dropped once the snapshot replacing it is safely on disk
+            entry.snapshot.write();
+            journal.truncate();
+        }
+    }
+
+    private synchronized void complete(long sequence, IOException error) {
+        if (error != null) {
+            System.err.println("Error writing ledger: " + error.getMessage());
+            if (failure == null) {
+                failure = error;
+            }
+            failureSequence = sequence;
+        }
+        completedSequence = sequence;
+        notifyAll();
+    }
+
+    private static class Entry {
+        final String record;
+        final List<String> records;
+        final SnapshotTask snapshot;
+        final boolean sync;
+        final boolean stop;
+        long sequence;
+
+        Entry(String record, List<String> records, SnapshotTask snapshot, boolean sync, boolean stop) {
+            this.record = record;
+            this.records = records;
+            this.snapshot = snapshot;
+            this.sync = sync;
+            this.stop = stop;
+        }
+    }
+}
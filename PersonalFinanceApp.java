@@ -1,4 +1,20 @@
 // PersonalFinanceApp.java
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.time.format.TextStyle;
 import java.util.*;
 
 /**
@@ -9,29 +25,83 @@ public class PersonalFinanceApp {
     private FinanceTracker financeTracker;
     private Scanner scanner;
     private boolean running;
+    private boolean closed;
+    private static final int PAGE_SIZE = 20;
+    // Listings stream through here rather than one System.out.println per row
+    private final LineWriter console = new LineWriter(new OutputStreamWriter(System.out));
     
     public PersonalFinanceApp() {
-        this.financeTracker = new FinanceTracker();
+        this.financeTracker = new FinanceTracker(new File("."), durability(), cacheRows());
+        // Warns as soon as an entry takes a month's spending past its income
+        financeTracker.addBudgetRule(BudgetRule.spendingOverIncome(BudgetRule.Period.MONTH));
+        financeTracker.addBudgetListener(alert -> System.out.println("WARNING: " + alert));
+        // Entries are still added, but one that repeats an earlier entry is pointed out
+        financeTracker.addDuplicateListener((duplicate, original, policy) ->
+                System.out.println("NOTE: This looks like a duplicate of: " + original));
         this.scanner = new Scanner(System.in);
         this.running = true;
     }
     
+    // -Dfinance.durability=PER_OPERATION|BATCHED|ON_SHUTDOWN; BATCHED by default
+    private static PersistenceWriter.Durability durability() {
+        String mode = System.getProperty("finance.durability", "BATCHED");
+        try {
+            return PersistenceWriter.Durability.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown durability mode " + mode + ", using BATCHED.");
+            return PersistenceWriter.Durability.BATCHED;
+        }
+    }
+    
+    // -Dfinance.cacheRows=N bounds the rows kept in memory; closed months beyond it load on demand
+    private static long cacheRows() {
+        String rows = System.getProperty("finance.cacheRows");
+        if (rows == null) {
+            return FinanceTracker.DEFAULT_CACHE_ROWS;
+        }
+        try {
+            return Long.parseLong(rows.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid cache size " + rows + ", using " + FinanceTracker.DEFAULT_CACHE_ROWS + ".");
+            return FinanceTracker.DEFAULT_CACHE_ROWS;
+        }
+    }
+    
     public void start() {
         displayWelcomeMessage();
         
-        while (running) {
-            displayMainMenu();
-            int choice = getUserChoice();
-            handleMenuSelection(choice);
-            
-            if (running) {
-                promptToContinue();
+        try {
+            while (running) {
+                displayMainMenu();
+                int choice = getUserChoice();
+                handleMenuSelection(choice);
+                
+                if (running) {
+                    promptToContinue();
+                }
             }
+        } catch (NoSuchElementException e) {
+            // Standard input ended; leave as Exit would
+            running = false;
+        } finally {
+            close();
         }
         
         scanner.close();
     }
     
+    /**
+     * Saves what the background writer still has queued and stops it. Called
+     * on Exit, when the menu loop ends and from the shutdown hook, so Ctrl+C
+     * does not drop changes that were already acknowledged.
+     */
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            financeTracker.close();
+        }
+    }
+    
     private void displayWelcomeMessage() {
         System.out.println("=====================================");
         System.out.println("    Personal Finance Tracker v1.0");
@@ -49,13 +119,19 @@ public class PersonalFinanceApp {
         System.out.println("5. Generate Monthly Report");
         System.out.println("6. Search Transactions");
         System.out.println("7. View Current Balance");
-        System.out.println("8. Exit Application");
-        System.out.print("\nPlease select an option (1-8): ");
+        System.out.println("8. Edit Transaction");
+        System.out.println("9. View Metrics");
+        System.out.println("10. Exit Application");
+        System.out.print("\nPlease select an option (1-10): ");
     }
     
     private int getUserChoice() {
+        String input = scanner.nextLine().trim();
+        if (input.equalsIgnoreCase("metrics")) {
+            return 9;
+        }
         try {
-            return Integer.parseInt(scanner.nextLine().trim());
+            return Integer.parseInt(input);
         } catch (NumberFormatException e) {
             return -1; // Invalid input
         }
@@ -85,6 +161,12 @@ public class PersonalFinanceApp {
                 handleViewCurrentBalance();
                 break;
             case 8:
+                handleEditTransaction();
+                break;
+            case 9:
+                handleViewMetrics();
+                break;
+            case 10:
                 handleExit();
                 break;
             default:
@@ -103,8 +185,8 @@ public class PersonalFinanceApp {
             return;
         }
         
-        double amount = getValidAmount();
-        if (amount <= 0) {
+        Money amount = getValidAmount();
+        if (amount == null) {
             return;
         }
         
@@ -130,18 +212,18 @@ public class PersonalFinanceApp {
         }
     }
     
-    private double getValidAmount() {
+    private Money getValidAmount() {
         System.out.print("Enter amount: $");
         try {
-            double amount = Double.parseDouble(scanner.nextLine().trim());
-            if (amount <= 0) {
+            Money amount = Money.parse(scanner.nextLine());
+            if (!amount.isPositive()) {
                 System.out.println("Amount must be greater than zero.");
-                return -1;
+                return null;
             }
             return amount;
         } catch (NumberFormatException e) {
             System.out.println("Invalid amount format. Please enter a valid number.");
-            return -1;
+            return null;
         }
     }
     
@@ -171,9 +253,10 @@ public class PersonalFinanceApp {
     private void handleRemoveTransaction() {
         System.out.println("\n--- REMOVE TRANSACTION ---");
         
-        List<Transaction> allTransactions = financeTracker.getTransactionsSortedByDate();
+        // Show only the 10 most recent transactions
+        List<Transaction> recentTransactions = financeTracker.getMostRecentTransactions(10);
         
-        if (allTransactions.isEmpty()) {
+        if (recentTransactions.isEmpty()) {
             System.out.println("No transactions found to remove.");
             return;
         }
@@ -181,10 +264,7 @@ public class PersonalFinanceApp {
         System.out.println("Recent transactions:");
         System.out.println("-".repeat(80));
         
-        // Show only the 10 most recent transactions
-        allTransactions.stream()
-            .limit(10)
-            .forEach(System.out::println);
+        printTransactions(recentTransactions, "");
         
         System.out.print("\nEnter the ID of the transaction to remove: ");
         
@@ -201,48 +281,179 @@ public class PersonalFinanceApp {
         }
     }
     
+    private void handleEditTransaction() {
+        System.out.println("\n--- EDIT TRANSACTION ---");
+        System.out.print("Enter the ID of the transaction to edit: ");
+        
+        Transaction transaction;
+        try {
+            int transactionId = Integer.parseInt(scanner.nextLine().trim());
+            transaction = financeTracker.getTransaction(transactionId);
+            
+            if (transaction == null) {
+                System.out.println("Transaction with ID " + transactionId + " not found.");
+                return;
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid ID format. Please enter a valid number.");
+            return;
+        }
+        
+        System.out.println(transaction);
+        System.out.println("Press Enter to keep the current value.");
+        
+        System.out.print("New description: ");
+        String description = scanner.nextLine().trim();
+        
+        System.out.print("New amount: $");
+        String amountInput = scanner.nextLine().trim();
+        Money amount = transaction.getAmount();
+        if (!amountInput.isEmpty()) {
+            try {
+                amount = Money.parse(amountInput);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid amount format. Transaction not changed.");
+                return;
+            }
+            if (!amount.isPositive()) {
+                System.out.println("Amount must be greater than zero. Transaction not changed.");
+                return;
+            }
+        }
+        
+        System.out.print("New category: ");
+        String category = scanner.nextLine().trim();
+        
+        // The tracker hands out bound copies, so the setters update the stored transaction
+        if (!description.isEmpty()) {
+            transaction.setDescription(description);
+        }
+        if (!amount.equals(transaction.getAmount())) {
+            transaction.setAmount(amount);
+        }
+        if (!category.isEmpty()) {
+            transaction.setCategory(category);
+        }
+        
+        System.out.println("Transaction updated successfully!");
+        System.out.println(transaction);
+    }
+    
     private void handleViewAllTransactions() {
         System.out.println("\n--- ALL TRANSACTIONS ---");
         
-        List<Transaction> allTransactions = financeTracker.getTransactionsSortedByDate();
-        
-        if (allTransactions.isEmpty()) {
+        int transactionCount = financeTracker.getTransactionCount();
+        if (transactionCount == 0) {
             System.out.println("No transactions found.");
             return;
         }
         
-        System.out.println("Total transactions: " + allTransactions.size());
+        System.out.println("Filter with any of: type=EXPENSE category=Food from=2025-01-01 to=2025-12-31 min=10 max=500");
+        System.out.print("Filter, or press Enter to show everything: ");
+        TransactionQuery query = parseFilter(scanner.nextLine().trim());
+        if (query == null) {
+            return;
+        }
+        
+        // Each page is fetched on demand, so only the rows shown are ever loaded
+        TransactionPage page = financeTracker.page(query.limit(PAGE_SIZE));
+        if (page.getTransactions().isEmpty()) {
+            System.out.println("No transactions match the filter.");
+            return;
+        }
+        
+        System.out.println("Total transactions: " + transactionCount);
         System.out.println("-".repeat(100));
         
-        for (Transaction transaction : allTransactions) {
-            System.out.println(transaction);
+        while (true) {
+            printTransactions(page.getTransactions(), "");
+            if (!page.hasMore()) {
+                break;
+            }
+            System.out.print("-- Press Enter for more, or q to stop: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                break;
+            }
+            page = financeTracker.page(query.after(page.getNextCursor()));
         }
     }
     
+    // Parses "key=value" filters; values may contain spaces, e.g. category=Eating Out
+    private TransactionQuery parseFilter(String input) {
+        TransactionQuery query = new TransactionQuery();
+        if (input.isEmpty()) {
+            return query;
+        }
+        
+        LocalDate from = null;
+        LocalDate to = null;
+        Money min = null;
+        Money max = null;
+        try {
+            for (String filter : input.split("\\s+(?=\\w+=)")) {
+                int separator = filter.indexOf('=');
+                if (separator < 0) {
+                    System.out.println("Invalid filter '" + filter + "'. Use key=value.");
+                    return null;
+                }
+                String key = filter.substring(0, separator).trim().toLowerCase();
+                String value = filter.substring(separator + 1).trim();
+                switch (key) {
+                    case "type":
+                        query.type(Transaction.TransactionType.valueOf(value.toUpperCase()));
+                        break;
+                    case "category":
+                        query.category(value);
+                        break;
+                    case "from":
+                        from = LocalDate.parse(value);
+                        break;
+                    case "to":
+                        to = LocalDate.parse(value);
+                        break;
+                    case "min":
+                        min = Money.parse(value);
+                        break;
+                    case "max":
+                        max = Money.parse(value);
+                        break;
+                    default:
+                        System.out.println("Unknown filter '" + key + "'.");
+                        return null;
+                }
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            System.out.println("Invalid filter value: " + e.getMessage());
+            return null;
+        }
+        return query.between(from, to).amountBetween(min, max);
+    }
+    
     private void handleViewTransactionsByCategory() {
         System.out.println("\n--- TRANSACTIONS BY CATEGORY ---");
         
-        Map<String, List<Transaction>> transactionsByCategory = financeTracker.getTransactionsByCategory();
+        // One parallel pass yields every category's net and counts; rows are fetched per category
+        LedgerAnalytics analytics = financeTracker.analyze();
+        Map<String, Money> netByCategory = analytics.netByCategory();
         
-        if (transactionsByCategory.isEmpty()) {
+        if (netByCategory.isEmpty()) {
             System.out.println("No transactions found.");
             return;
         }
         
-        for (Map.Entry<String, List<Transaction>> entry : transactionsByCategory.entrySet()) {
+        for (Map.Entry<String, Money> entry : netByCategory.entrySet()) {
             String category = entry.getKey();
-            List<Transaction> categoryTransactions = entry.getValue();
+            long count = analytics.forCategory(category, Transaction.TransactionType.INCOME).getCount()
+                         + analytics.forCategory(category, Transaction.TransactionType.EXPENSE).getCount();
             
-            double totalAmount = categoryTransactions.stream()
-                .mapToDouble(t -> t.getType() == Transaction.TransactionType.INCOME ? 
-                           t.getAmount() : -t.getAmount())
-                .sum();
-            
-            System.out.println("\n" + category.toUpperCase() + " (Net: $" + String.format("%.2f", totalAmount) + ")");
+            System.out.println("\n" + category.toUpperCase() + " (Net: $" + entry.getValue() + ")");
             System.out.println("-".repeat(50));
             
-            for (Transaction transaction : categoryTransactions) {
-                System.out.println("  " + transaction);
+            TransactionPage page = financeTracker.page(new TransactionQuery().category(category).limit(PAGE_SIZE));
+            printTransactions(page.getTransactions(), "  ");
+            if (count > page.getTransactions().size()) {
+                System.out.println("  ... " + (count - page.getTransactions().size()) 
+                                   + " older (View All Transactions with category=" + category + ")");
             }
         }
     }
@@ -250,46 +461,73 @@ public class PersonalFinanceApp {
     private void handleGenerateMonthlyReport() {
         System.out.println("\n--- MONTHLY REPORT ---");
         
-        List<Transaction> monthlyTransactions = financeTracker.getTransactionsForCurrentMonth();
-        
-        if (monthlyTransactions.isEmpty()) {
-            System.out.println("No transactions found for the current month.");
+        YearMonth month = getReportMonth();
+        if (month == null) {
             return;
         }
         
-        double monthlyIncome = monthlyTransactions.stream()
-            .filter(t -> t.getType() == Transaction.TransactionType.INCOME)
-            .mapToDouble(Transaction::getAmount)
-            .sum();
-        
-        double monthlyExpenses = monthlyTransactions.stream()
-            .filter(t -> t.getType() == Transaction.TransactionType.EXPENSE)
-            .mapToDouble(Transaction::getAmount)
-            .sum();
+        if (financeTracker.getTransactionCountForMonth(month) == 0) {
+            System.out.println("No transactions found for " + month + ".");
+            return;
+        }
         
-        double netAmount = monthlyIncome - monthlyExpenses;
+        LedgerAnalytics analytics = financeTracker.analyze(month, month);
+        AggregateStats expenseStats = analytics.total(Transaction.TransactionType.EXPENSE);
+        Money monthlyIncome = analytics.total(Transaction.TransactionType.INCOME).getSum();
+        Money monthlyExpenses = expenseStats.getSum();
+        Money netAmount = monthlyIncome.minus(monthlyExpenses);
         
-        System.out.println("Report for: " + java.time.YearMonth.now());
+        System.out.println("Report for: " + month);
         System.out.println("-".repeat(40));
-        System.out.printf("Total Income:     $%.2f%n", monthlyIncome);
-        System.out.printf("Total Expenses:   $%.2f%n", monthlyExpenses);
+        System.out.println("Total Income:     $" + monthlyIncome);
+        System.out.println("Total Expenses:   $" + monthlyExpenses);
         System.out.println("-".repeat(40));
-        System.out.printf("Net Amount:       $%.2f%n", netAmount);
+        System.out.println("Net Amount:       $" + netAmount);
         
-        if (netAmount < 0) {
+        if (netAmount.signum() < 0) {
             System.out.println("WARNING: You spent more than you earned this month!");
         }
         
-        // Show expense breakdown by category
-        Map<String, Double> expensesByCategory = financeTracker.getMonthlyExpensesByCategory();
+        // Show expense breakdown by category, largest first
+        Map<String, AggregateStats> expensesByCategory = analytics.byCategory(Transaction.TransactionType.EXPENSE);
         
         if (!expensesByCategory.isEmpty()) {
             System.out.println("\nExpenses by Category:");
             System.out.println("-".repeat(30));
             
-            expensesByCategory.entrySet().stream()
-                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-                .forEach(entry -> System.out.printf("%-15s: $%.2f%n", entry.getKey(), entry.getValue()));
+            expensesByCategory.forEach((category, stats) -> 
+                System.out.printf("%-15s: $%s%n", category, stats.getSum()));
+            
+            System.out.println("\nExpense Statistics:");
+            System.out.println("-".repeat(30));
+            System.out.println("Transactions:     " + expenseStats.getCount());
+            System.out.println("Average expense:  $" + expenseStats.getMean());
+            System.out.println("Largest expense:  $" + expenseStats.getMax());
+            
+            Map.Entry<DayOfWeek, AggregateStats> busiest = null;
+            for (Map.Entry<DayOfWeek, AggregateStats> entry : analytics.byWeekday(Transaction.TransactionType.EXPENSE).entrySet()) {
+                if (busiest == null || entry.getValue().getSum().compareTo(busiest.getValue().getSum()) > 0) {
+                    busiest = entry;
+                }
+            }
+            System.out.println("Top spending day: " + busiest.getKey().getDisplayName(TextStyle.FULL, Locale.getDefault()) 
+                               + " ($" + busiest.getValue().getSum() + ")");
+        }
+    }
+    
+    private YearMonth getReportMonth() {
+        System.out.print("Enter month (YYYY-MM) or press Enter for the current month: ");
+        String input = scanner.nextLine().trim();
+        
+        if (input.isEmpty()) {
+            return YearMonth.now();
+        }
+        
+        try {
+            return YearMonth.parse(input);
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid month format. Please use YYYY-MM.");
+            return null;
         }
     }
     
@@ -304,46 +542,75 @@ public class PersonalFinanceApp {
             return;
         }
         
-        List<Transaction> searchResults = financeTracker.searchTransactions(keyword);
+        int matchCount = financeTracker.countSearchMatches(keyword);
         
-        if (searchResults.isEmpty()) {
+        if (matchCount == 0) {
             System.out.println("No transactions found matching '" + keyword + "'");
             return;
         }
         
         System.out.println("Search results for '" + keyword + "':");
-        System.out.println("Found " + searchResults.size() + " transaction(s)");
+        System.out.println("Found " + matchCount + " transaction(s)");
         System.out.println("-".repeat(80));
         
-        for (Transaction transaction : searchResults) {
-            System.out.println(transaction);
+        for (int offset = 0; offset < matchCount; offset += PAGE_SIZE) {
+            if (offset > 0) {
+                System.out.print("-- Press Enter for more, or q to stop: ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                    break;
+                }
+            }
+            printTransactions(financeTracker.searchTransactions(keyword, TrigramIndex.MatchMode.SUBSTRING, 
+                                                                false, offset, PAGE_SIZE), "");
+        }
+    }
+    
+    private void printTransactions(List<Transaction> transactions, String indent) {
+        // Anything already printed through System.out has to come out first
+        System.out.flush();
+        try {
+            for (Transaction transaction : transactions) {
+                transaction.appendTo(console.line().append(indent));
+                console.endLine();
+            }
+            console.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing output: " + e.getMessage());
         }
     }
     
     private void handleViewCurrentBalance() {
         System.out.println("\n--- CURRENT BALANCE ---");
         
-        double totalIncome = financeTracker.calculateTotalIncome();
-        double totalExpenses = financeTracker.calculateTotalExpenses();
-        double currentBalance = financeTracker.getCurrentBalance();
+        Money totalIncome = financeTracker.calculateTotalIncome();
+        Money totalExpenses = financeTracker.calculateTotalExpenses();
+        Money currentBalance = financeTracker.getCurrentBalance();
         
         System.out.println("Financial Summary:");
         System.out.println("-".repeat(30));
-        System.out.printf("Total Income:     $%.2f%n", totalIncome);
-        System.out.printf("Total Expenses:   $%.2f%n", totalExpenses);
+        System.out.println("Total Income:     $" + totalIncome);
+        System.out.println("Total Expenses:   $" + totalExpenses);
         System.out.println("-".repeat(30));
-        System.out.printf("Current Balance:  $%.2f%n", currentBalance);
+        System.out.println("Current Balance:  $" + currentBalance);
         
-        if (currentBalance < 0) {
+        if (currentBalance.signum() < 0) {
             System.out.println("Note: Your expenses exceed your income.");
-        } else if (currentBalance == 0) {
+        } else if (currentBalance.signum() == 0) {
             System.out.println("Note: You've broken even.");
         } else {
             System.out.println("Note: You have a positive balance. Good job!");
         }
     }
     
+    // Latency percentiles and I/O counters since startup; also published over JMX
+    private void handleViewMetrics() {
+        System.out.println("\n--- METRICS ---");
+        System.out.print(TrackerMetrics.get().report());
+        System.out.println("JMX: " + TrackerMetrics.OBJECT_NAME);
+    }
+    
     private void handleExit() {
+        close();
         System.out.println("\nThank you for using Personal Finance Tracker!");
         System.out.println("Your data has been automatically saved.");
         running = false;
@@ -354,8 +621,118 @@ public class PersonalFinanceApp {
         scanner.nextLine();
     }
     
+    /**
+     * With no arguments, runs the interactive menu. Otherwise runs headless:
+     * [--format csv|json] followed by one command (e.g. "balance" or
+     * "report --month 2025-08"), or by "run [FILE]" to execute a script, one
+     * command per line, read from FILE or stdin. Records go to stdout and
+     * status messages to stderr; the exit code is 1 if any command failed.
+     * "serve [--port N] [--threads N]" instead runs the HTTP/JSON server on
+     * localhost until the process is stopped.
+     */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("serve")) {
+            serve(args);
+            return;
+        }
+        if (args.length > 0) {
+            System.exit(runBatch(args));
+        }
         PersonalFinanceApp app = new PersonalFinanceApp();
+        Runtime.getRuntime().addShutdownHook(new Thread(app::close));
         app.start();
     }
+    
+    private static void serve(String[] args) {
+        int port = FinanceServer.DEFAULT_PORT;
+        int threads = FinanceServer.DEFAULT_THREADS;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("--port") && i + 1 < args.length) {
+                    port = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() + "; use serve [--port N] [--threads N].");
+            System.exit(2);
+        }
+        
+        // Streamed responses end in small writes that Nagle's algorithm would hold for the client's delayed ACK;
+        // the JDK server reads this once, when its first instance is created
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        FinanceTracker tracker = new FinanceTracker(new File("."), durability(), cacheRows());
+        FinanceServer server;
+        try {
+            // Loopback only: the server has no authentication
+            server = new FinanceServer(tracker, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), threads);
+        } catch (IOException e) {
+            System.err.println("Could not start server: " + e.getMessage());
+            tracker.close();
+            System.exit(1);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(2);
+            tracker.close();
+        }));
+        server.start();
+        System.out.println("Serving on http://localhost:" + server.getPort() + "/ (Ctrl+C to stop)");
+    }
+    
+    private static int runBatch(String[] args) {
+        List<String> words = new ArrayList<>(Arrays.asList(args));
+        BatchRunner.Format format = BatchRunner.Format.CSV;
+        if (words.get(0).equals("--format")) {
+            if (words.size() < 2) {
+                System.err.println("Missing format; use --format csv or --format json.");
+                return 2;
+            }
+            try {
+                format = BatchRunner.Format.valueOf(words.get(1).toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown format " + words.get(1) + "; use csv or json.");
+                return 2;
+            }
+            words = words.subList(2, words.size());
+            if (words.isEmpty()) {
+                System.err.print(BatchRunner.USAGE);
+                return 2;
+            }
+        }
+        if (words.get(0).equals("help") || words.get(0).equals("--help")) {
+            System.out.print(BatchRunner.USAGE);
+            return 0;
+        }
+        
+        // The tracker reports loading progress on System.out, which now belongs to the records
+        PrintStream records = System.out;
+        System.setOut(System.err);
+        FinanceTracker tracker = new FinanceTracker(new File("."), durability(), cacheRows());
+        BatchRunner runner = new BatchRunner(tracker, new OutputStreamWriter(records, StandardCharsets.UTF_8), format);
+        try {
+            if (words.get(0).equals("run")) {
+                Reader script = words.size() > 1 && !words.get(1).equals("-")
+                                ? Files.newBufferedReader(Paths.get(words.get(1)), StandardCharsets.UTF_8)
+                                : new InputStreamReader(System.in, StandardCharsets.UTF_8);
+                try (script) {
+                    runner.run(script);
+                }
+            } else {
+                runner.execute(words);
+                runner.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Error running commands: " + e.getMessage());
+            return 1;
+        } finally {
+            tracker.close();
+        }
+        return runner.getFailureCount() > 0 ? 1 : 0;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,163 @@
+// RecoveryCheck.java
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Crash-recovery check for rows added through the HTTP server.
+ *
+ * Usage: java RecoveryCheck
+ *
+ * A child JVM serves a fresh ledger in a temporary directory, posts rows
+ * whose text is awkward to store (commas and quotes in the category and
+ * description, and a description with a line break, which must be refused
+ * with 400), then halts without closing anything, as kill -9 would. The
+ * ledger is reopened here from its journal alone, and every row the server
+ * acknowledged must come back with the same content. Exits with 1 if not.
+ */
+public class RecoveryCheck {
+    private static final LocalDate DATE = LocalDate.of(2026, 10, 1);
+
+    // Description, category, and the status the server must answer with
+    private static final String[][] ROWS = {
+        {"Lunch, with team", "Food, Dining", "201"},
+        {"Say \"hi\"", "Gifts \"misc\"", "201"},
+        {"line1\nline2", "Food", "400"},
+        {"Taxi", "Travel\r\nWork", "400"},
+        {"Plain row", "Rent", "201"},
+    };
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2 && args[0].equals("child")) {
+            runChild(new File(args[1]));
+            return;
+        }
+
+        Path directory = Files.createTempDirectory("finance-recovery");
+        try {
+            System.exit(check(directory.toFile()) ? 0 : 1);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static boolean check(File directory) throws IOException, InterruptedException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Process child = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                                           RecoveryCheck.class.getName(), "child", directory.getPath())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+
+        // The child answers with one line per row: the status it got, and the id for a 201
+        List<String> answers = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                answers.add(line);
+            }
+        }
+        child.waitFor();
+        if (answers.size() != ROWS.length) {
+            System.out.println("FAILED: the child answered " + answers.size() + " of " + ROWS.length + " rows");
+            return false;
+        }
+
+        // Quiet the tracker's loading messages
+        PrintStream results = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        boolean passed = true;
+        int acknowledged = 0;
+        FinanceTracker tracker = new FinanceTracker(directory, PersistenceWriter.Durability.PER_OPERATION);
+        try {
+            for (int i = 0; i < ROWS.length; i++) {
+                String[] answer = answers.get(i).split(" ");
+                String expected = ROWS[i][2];
+                if (!answer[0].equals(expected)) {
+                    results.println("FAILED: row " + i + " got " + answer[0] + ", expected " + expected);
+                    passed = false;
+                    continue;
+                }
+                if (!expected.equals("201")) {
+                    continue;
+                }
+                acknowledged++;
+                Transaction recovered = tracker.getTransaction(Integer.parseInt(answer[1]));
+                if (recovered == null || !recovered.getDescription().equals(ROWS[i][0])
+                        || !recovered.getCategory().equals(ROWS[i][1]) || !recovered.getDate().equals(DATE)) {
+                    results.println("FAILED: row " + i + " recovered as " + recovered);
+                    passed = false;
+                }
+            }
+            if (tracker.getTransactionCount() != acknowledged) {
+                results.println("FAILED: recovered " + tracker.getTransactionCount() + " rows, acknowledged "
+                                + acknowledged);
+                passed = false;
+            }
+        } finally {
+            tracker.close();
+        }
+        if (passed) {
+            results.println("OK: " + acknowledged + " acknowledged rows recovered after a crash");
+        }
+        return passed;
+    }
+
+    // Every add waits for its fsync, so a 201 means the row is on disk before the halt
+    private static void runChild(File directory) throws IOException {
+        PrintStream answers = System.out;
+        System.setOut(System.err);
+        FinanceTracker tracker = new FinanceTracker(directory, PersistenceWriter.Durability.PER_OPERATION);
+        FinanceServer server = new FinanceServer(tracker, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                                                 FinanceServer.DEFAULT_THREADS);
+        server.start();
+        for (String[] row : ROWS) {
+            StringBuilder body = new StringBuilder("{\"description\":");
+            TransactionFormat.appendJson(body, row[0]).append(",\"amount\":12.50,\"category\":");
+            TransactionFormat.appendJson(body, row[1]).append(",\"type\":\"EXPENSE\",\"date\":\"")
+                    .append(DATE).append("\"}");
+            answers.println(post(server.getPort(), body.toString()));
+        }
+        answers.flush();
+        Runtime.getRuntime().halt(0);
+    }
+
+    private static String post(int port, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + "/transactions")
+                .openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        String response = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        in.close();
+        if (status != 201) {
+            return Integer.toString(status);
+        }
+        // {"id":N,...}
+        int start = response.indexOf(':') + 1;
+        return status + " " + response.substring(start, response.indexOf(',', start));
+    }
+}
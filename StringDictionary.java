@@ -0,0 +1,90 @@
+// StringDictionary.java
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary encoding for repeated strings (categories, descriptions).
+ * Each distinct value is stored once and referenced by an int code;
+ * codes are reference counted and recycled once nothing uses them.
+ */
+public class StringDictionary {
+    private final List<String> values;
+    private final Map<String, Integer> codes;
+    private int[] refCounts;
+    private int[] freeCodes;
+    private int freeCount;
+    
+    public StringDictionary() {
+        this.values = new ArrayList<>();
+        this.codes = new HashMap<>();
+        this.refCounts = new int[16];
+        this.freeCodes = new int[16];
+    }
+    
+    private StringDictionary(StringDictionary other) {
+        this.values = new ArrayList<>(other.values);
+        this.codes = new HashMap<>(other.codes);
+        this.refCounts = other.refCounts.clone();
+        this.freeCodes = other.freeCodes.clone();
+        this.freeCount = other.freeCount;
+    }
+    
+    public StringDictionary copy() {
+        return new StringDictionary(this);
+    }
+    
+    // Returns the code for value, adding it if needed, and takes a reference on it
+    public int acquire(String value) {
+        Integer existing = codes.get(value);
+        int code;
+        if (existing != null) {
+            code = existing;
+        } else if (freeCount > 0) {
+            code = freeCodes[--freeCount];
+            values.set(code, value);
+            codes.put(value, code);
+        } else {
+            code = values.size();
+            values.add(value);
+            codes.put(value, code);
+            if (code == refCounts.length) {
+                refCounts = Arrays.copyOf(refCounts, code * 2);
+            }
+        }
+        refCounts[code]++;
+        return code;
+    }
+    
+    public void release(int code) {
+        if (--refCounts[code] == 0) {
+            codes.remove(values.get(code));
+            values.set(code, null);
+            if (freeCount == freeCodes.length) {
+                freeCodes = Arrays.copyOf(freeCodes, freeCount * 2);
+            }
+            freeCodes[freeCount++] = code;
+        }
+    }
+    
+    // Returns the code for value without taking a reference, or -1 if unknown
+    public int codeOf(String value) {
+        Integer code = codes.get(value);
+        return code != null ? code : -1;
+    }
+    
+    public String valueOf(int code) {
+        return values.get(code);
+    }
+    
+    // Upper bound (exclusive) of codes handed out so far; freed codes read as null
+    public int codeLimit() {
+        return values.size();
+    }
+    
+    public int size() {
+        return codes.size();
+    }
+}
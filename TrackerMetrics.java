@@ -0,0 +1,333 @@
+// TrackerMetrics.java
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.*;
+
+/**
+ * Process-wide latency histograms and counters for the tracker's hot paths.
+ * Published over JMX as PersonalFinanceTracker:type=Metrics with read-only
+ * attributes such as "add.count", "search.p99Micros" or "rowsRejected",
+ * and a "reset" operation. Every recording path is lock-free.
+ */
+public class TrackerMetrics implements DynamicMBean {
+    public static final String OBJECT_NAME = "PersonalFinanceTracker:type=Metrics";
+    private static final TrackerMetrics INSTANCE = new TrackerMetrics();
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    public enum Operation {
+        ADD, REMOVE, SEARCH, QUERY, REPORT, LOAD, SAVE, HTTP;
+
+        public String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    private final LongAdder rowsParsed = new LongAdder();
+    private final LongAdder rowsRejected = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder ioNanos = new LongAdder();
+    private final LongAdder partitionHits = new LongAdder();
+    private final LongAdder partitionMisses = new LongAdder();
+    private final LongAdder partitionEvictions = new LongAdder();
+    private final LongAdder reportCacheHits = new LongAdder();
+    private final LongAdder reportCacheMisses = new LongAdder();
+
+    static {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+        } catch (JMException | RuntimeException e) {
+            System.err.println("Metrics are not available over JMX: " + e.getMessage());
+        }
+    }
+
+    private TrackerMetrics() {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+        }
+    }
+
+    public static TrackerMetrics get() {
+        return INSTANCE;
+    }
+
+    public LatencyHistogram latency(Operation operation) {
+        return latencies.get(operation);
+    }
+
+    public void rowParsed() {
+        rowsParsed.increment();
+    }
+
+    public void rowsParsed(long count) {
+        rowsParsed.add(count);
+    }
+
+    public void rowRejected() {
+        rowsRejected.increment();
+    }
+
+    public void rowsRejected(long count) {
+        rowsRejected.add(count);
+    }
+
+    public void bytesWritten(long count) {
+        bytesWritten.add(count);
+    }
+
+    // Time spent blocked on file reads, writes and syncs
+    public void ioSince(long startNanos) {
+        ioNanos.add(System.nanoTime() - startNanos);
+    }
+
+    // A read whose months were all in memory, or one that had to load some from disk
+    public void partitionHit() {
+        partitionHits.increment();
+    }
+
+    public void partitionMiss() {
+        partitionMisses.increment();
+    }
+
+    public void partitionEvicted() {
+        partitionEvictions.increment();
+    }
+
+    // A month's report served from its memo, or computed from the rows
+    public void reportCacheHit() {
+        reportCacheHits.increment();
+    }
+
+    public void reportCacheMiss() {
+        reportCacheMisses.increment();
+    }
+
+    public long getRowsParsed() {
+        return rowsParsed.sum();
+    }
+
+    public long getRowsRejected() {
+        return rowsRejected.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public long getIoNanos() {
+        return ioNanos.sum();
+    }
+
+    public long getPartitionHits() {
+        return partitionHits.sum();
+    }
+
+    public long getPartitionMisses() {
+        return partitionMisses.sum();
+    }
+
+    public long getPartitionEvictions() {
+        return partitionEvictions.sum();
+    }
+
+    public long getReportCacheHits() {
+        return reportCacheHits.sum();
+    }
+
+    public long getReportCacheMisses() {
+        return reportCacheMisses.sum();
+    }
+
+    public void reset() {
+        latencies.values().forEach(LatencyHistogram::reset);
+        rowsParsed.reset();
+        rowsRejected.reset();
+        bytesWritten.reset();
+        ioNanos.reset();
+        partitionHits.reset();
+        partitionMisses.reset();
+        partitionEvictions.reset();
+        reportCacheHits.reset();
+        reportCacheMisses.reset();
+    }
+
+    // Human-readable summary, as shown by the console's metrics command
+    public String report() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-8s %10s %10s %10s %10s %10s %10s%n",
+                                 "op", "count", "mean us", "p50 us", "p99 us", "p99.9 us", "max us"));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latencies.get(operation);
+            out.append(String.format("%-8s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n", operation.label(),
+                                     histogram.getCount(), histogram.getMeanNanos() / 1000.0,
+                                     histogram.getPercentileNanos(50) / 1000.0,
+                                     histogram.getPercentileNanos(99) / 1000.0,
+                                     histogram.getPercentileNanos(99.9) / 1000.0,
+                                     histogram.getMaxNanos() / 1000.0));
+        }
+        out.append(String.format("%nRows parsed: %d, rejected: %d%n", getRowsParsed(), getRowsRejected()));
+        out.append(String.format("Bytes written: %d, file I/O time: %.1f ms%n", getBytesWritten(), getIoNanos() / 1e6));
+        out.append(String.format("Partition cache hits: %d, misses: %d, evictions: %d%n",
+                                 getPartitionHits(), getPartitionMisses(), getPartitionEvictions()));
+        out.append(String.format("Report cache hits: %d, misses: %d%n", getReportCacheHits(), getReportCacheMisses()));
+        return out.toString();
+    }
+
+    /**
+     * Output stream that counts every byte passed through it.
+     */
+    public static class CountingOutputStream extends FilterOutputStream {
+        public CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            INSTANCE.bytesWritten.increment();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            INSTANCE.bytesWritten.add(len);
+        }
+    }
+
+    // --- DynamicMBean ---
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        switch (attribute) {
+            case "rowsParsed":
+                return getRowsParsed();
+            case "rowsRejected":
+                return getRowsRejected();
+            case "bytesWritten":
+                return getBytesWritten();
+            case "ioMillis":
+                return getIoNanos() / 1e6;
+            case "partitionHits":
+                return getPartitionHits();
+            case "partitionMisses":
+                return getPartitionMisses();
+            case "partitionEvictions":
+                return getPartitionEvictions();
+            case "reportCacheHits":
+                return getReportCacheHits();
+            case "reportCacheMisses":
+                return getReportCacheMisses();
+            default:
+                break;
+        }
+
+        int dot = attribute.indexOf('.');
+        if (dot > 0) {
+            for (Operation operation : Operation.values()) {
+                if (operation.label().equals(attribute.substring(0, dot))) {
+                    Object value = histogramAttribute(latencies.get(operation), attribute.substring(dot + 1));
+                    if (value != null) {
+                        return value;
+                    }
+                }
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    private static Object histogramAttribute(LatencyHistogram histogram, String field) {
+        switch (field) {
+            case "count":
+                return histogram.getCount();
+            case "meanMicros":
+                return histogram.getMeanNanos() / 1000.0;
+            case "maxMicros":
+                return histogram.getMaxNanos() / 1000.0;
+            default:
+                for (int i = 0; i < PERCENTILES.length; i++) {
+                    if (field.equals(PERCENTILE_NAMES[i] + "Micros")) {
+                        return histogram.getPercentileNanos(PERCENTILES[i]) / 1000.0;
+                    }
+                }
+                return null;
+        }
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // Unknown names are left out, as the DynamicMBean contract allows
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if ("reset".equals(actionName)) {
+            reset();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (Operation operation : Operation.values()) {
+            String prefix = operation.label() + ".";
+            attributes.add(attribute(prefix + "count", "long", "Completed " + operation.label() + " operations"));
+            attributes.add(attribute(prefix + "meanMicros", "double", "Mean latency"));
+            for (String percentile : PERCENTILE_NAMES) {
+                attributes.add(attribute(prefix + percentile + "Micros", "double", percentile + " latency"));
+            }
+            attributes.add(attribute(prefix + "maxMicros", "double", "Maximum latency"));
+        }
+        attributes.add(attribute("rowsParsed", "long", "CSV rows parsed"));
+        attributes.add(attribute("rowsRejected", "long", "CSV rows rejected as unreadable or invalid"));
+        attributes.add(attribute("bytesWritten", "long", "Bytes written to the journal and ledger files"));
+        attributes.add(attribute("ioMillis", "double", "Time spent in file I/O"));
+        attributes.add(attribute("partitionHits", "long", "Reads served from months already in memory"));
+        attributes.add(attribute("partitionMisses", "long", "Reads that loaded months from disk"));
+        attributes.add(attribute("partitionEvictions", "long", "Closed months dropped from memory"));
+        attributes.add(attribute("reportCacheHits", "long", "Monthly reports served from a memoized result"));
+        attributes.add(attribute("reportCacheMisses", "long", "Monthly reports computed from the rows"));
+
+        MBeanOperationInfo[] operations = {
+            new MBeanOperationInfo("reset", "Clears all histograms and counters",
+                                   new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION)
+        };
+        return new MBeanInfo(getClass().getName(), "Personal Finance Tracker hot-path metrics",
+                             attributes.toArray(new MBeanAttributeInfo[0]), null, operations, null);
+    }
+
+    private static MBeanAttributeInfo attribute(String name, String type, String description) {
+        return new MBeanAttributeInfo(name, type, description, true, false, false);
+    }
+}
@@ -1,27 +1,31 @@
 // Transaction.java
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents a financial transaction (income or expense)
  * @author Your Name
  */
 public class Transaction {
-    private static int nextId = 1;
+    private static final AtomicInteger nextId = new AtomicInteger(1);
     private int id;
     private String description;
-    private double amount;
+    private Money amount;
     private String category;
     private LocalDate date;
     private TransactionType type;
+    private TransactionListener listener;
     
     public enum TransactionType {
         INCOME, EXPENSE
     }
     
     // Constructor for new transactions
-    public Transaction(String description, double amount, String category, TransactionType type) {
-        this.id = nextId++;
+    public Transaction(String description, Money amount, String category, TransactionType type) {
+        requireSingleLine(description, "Description");
+        requireSingleLine(category, "Category");
+        this.id = nextId.getAndIncrement();
         this.description = description;
         this.amount = amount;
         this.category = category;
@@ -29,9 +33,17 @@ public class Transaction {
         this.date = LocalDate.now();
     }
     
+    // Constructor for new transactions with a known date (e.g. imported from a bank export)
+    public Transaction(String description, Money amount, String category, TransactionType type, LocalDate date) {
+        this(description, amount, category, type);
+        this.date = date;
+    }
+    
     // Constructor for loading existing transactions
-    public Transaction(int id, String description, double amount, String category, 
+    public Transaction(int id, String description, Money amount, String category, 
                       TransactionType type, LocalDate date) {
+        requireSingleLine(description, "Description");
+        requireSingleLine(category, "Category");
         this.id = id;
         this.description = description;
         this.amount = amount;
@@ -40,11 +52,34 @@ public class Transaction {
         this.date = date;
         
         // Update next ID to prevent conflicts
-        if (id >= nextId) {
-            nextId = id + 1;
+        reserveIdsThrough(id);
+    }
+    
+    /**
+     * Whether the text can be stored: the journal and data file hold one
+     * row per line, so a line break would split the row and the row would
+     * be lost on the next load. Every other character round-trips.
+     */
+    public static boolean isSingleLine(String text) {
+        return text == null || (text.indexOf('\n') < 0 && text.indexOf('\r') < 0);
+    }
+    
+    private static void requireSingleLine(String text, String field) {
+        if (!isSingleLine(text)) {
+            throw new IllegalArgumentException(field + " must not contain line breaks");
         }
     }
     
+    // Ensures ids up to maxId are never handed out again (used after bulk loads)
+    static void reserveIdsThrough(int maxId) {
+        nextId.accumulateAndGet(maxId + 1, Math::max);
+    }
+    
+    // Id the next new transaction will get; ids are never handed out twice, so later ones are larger
+    static int peekNextId() {
+        return nextId.get();
+    }
+    
     // Getters
     public int getId() { 
         return id; 
@@ -54,7 +89,7 @@ public class Transaction {
         return description; 
     }
     
-    public double getAmount() { 
+    public Money getAmount() { 
         return amount; 
     }
     
@@ -70,53 +105,106 @@ public class Transaction {
         return date; 
     }
     
-    // Setters for editing transactions
+    // Attaches the tracker that must hear about edits; null detaches
+    void setListener(TransactionListener listener) {
+        this.listener = listener;
+    }
+    
+    // Setters for editing transactions; the value is assigned only once the listener has accepted it
     public void setDescription(String description) { 
+        Objects.requireNonNull(description, "description");
+        requireSingleLine(description, "Description");
+        if (listener != null) {
+            listener.descriptionChanged(this, description);
+        }
         this.description = description; 
     }
     
-    public void setAmount(double amount) { 
+    public void setAmount(Money amount) { 
+        Objects.requireNonNull(amount, "amount");
+        if (listener != null) {
+            listener.amountChanged(this, amount);
+        }
         this.amount = amount; 
     }
     
     public void setCategory(String category) { 
+        Objects.requireNonNull(category, "category");
+        requireSingleLine(category, "Category");
+        if (listener != null) {
+            listener.categoryChanged(this, category);
+        }
         this.category = category; 
     }
     
     @Override
     public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        return String.format("ID: %d | Date: %s | Type: %s | Amount: $%.2f | Category: %s | Description: %s", 
-                           id, date.format(formatter), type.toString(), amount, category, description);
+        return appendTo(new StringBuilder(96)).toString();
+    }
+    
+    // Appends the display form used by toString() without allocating intermediate strings
+    public StringBuilder appendTo(StringBuilder out) {
+        return TransactionFormat.appendDisplay(out, id, description, amount.getMinorUnits(), 
+                                               category, type, (int) date.toEpochDay());
     }
     
     // Convert transaction to CSV format for file storage
     public String toCSV() {
-        return String.format("%d,\"%s\",%.2f,%s,%s,%s", 
-                           id, description.replace("\"", "\"\""), amount, category, type.toString(), date.toString());
+        return appendCSV(new StringBuilder(64)).toString();
+    }
+    
+    // Appends the CSV form used by toCSV(), for writers that reuse one buffer across rows
+    public StringBuilder appendCSV(StringBuilder out) {
+        return TransactionFormat.appendCSV(out, id, description, amount.getMinorUnits(), 
+                                           category, type, (int) date.toEpochDay());
     }
     
     // Create transaction object from CSV string
     public static Transaction fromCSV(String csvLine) {
-        // Simple CSV parsing - in production, would use a proper CSV library
-        String[] parts = csvLine.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)");
+        return fromCSV(csvLine, false);
+    }
+    
+    // With assignNewId the row's id column is ignored and a fresh id is issued (used by imports)
+    public static Transaction fromCSV(String csvLine, boolean assignNewId) {
+        CsvRowSplitter row = new CsvRowSplitter(false);
+        row.split(csvLine, 0, csvLine.length());
         
-        if (parts.length < 6) {
+        if (row.fieldCount() < 6) {
+            TrackerMetrics.get().rowRejected();
             return null;
         }
         
         try {
-            int id = Integer.parseInt(parts[0].trim());
-            String description = parts[1].trim().replaceAll("^\"|\"$", "").replace("\"\"", "\"");
-            double amount = Double.parseDouble(parts[2].trim());
-            String category = parts[3].trim();
-            TransactionType type = TransactionType.valueOf(parts[4].trim());
-            LocalDate date = LocalDate.parse(parts[5].trim());
-            
-            return new Transaction(id, description, amount, category, type, date);
+            Transaction transaction = fromFields(row, assignNewId);
+            TrackerMetrics.get().rowParsed();
+            return transaction;
         } catch (Exception e) {
+            TrackerMetrics.get().rowRejected();
             System.err.println("Error parsing CSV line: " + csvLine);
             return null;
         }
     }
-}
\ No newline at end of file
+    
+    // The conversion from split fields shared with ParallelCsvLoader; throws when a field does not parse
+    static Transaction fromFields(CsvRowSplitter row, boolean assignNewId) {
+        if (row.fieldCount() < 6) {
+            throw new IllegalArgumentException("Expected 6 fields, found " + row.fieldCount());
+        }
+        int id = assignNewId ? 0 : row.intField(0);
+        String description = row.text(1);
+        Money amount = Money.ofMinor(row.amountField(2));
+        String category = row.trimmedText(3);
+        TransactionType type;
+        if (row.fieldEquals(4, "INCOME")) {
+            type = TransactionType.INCOME;
+        } else if (row.fieldEquals(4, "EXPENSE")) {
+            type = TransactionType.EXPENSE;
+        } else {
+            throw new IllegalArgumentException("Unknown transaction type");
+        }
+        LocalDate date = row.dateField(5);
+        
+        return assignNewId ? new Transaction(description, amount, category, type, date)
+                           : new Transaction(id, description, amount, category, type, date);
+    }
+}
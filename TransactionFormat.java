@@ -0,0 +1,138 @@
+// TransactionFormat.java
+import java.time.LocalDate;
+
+/**
+ * Allocation-free text encoding of transaction rows.
+ * Everything appends into a caller-supplied StringBuilder: amounts are
+ * written as fixed-point minor units without going through a double,
+ * and dates come from a small cache of pre-encoded yyyy-MM-dd strings.
+ */
+public class TransactionFormat {
+    private static final int DATE_CACHE_SIZE = 4096;   // power of two, covers ~11 years of consecutive days
+    private static final DateEntry[] DATE_CACHE = new DateEntry[DATE_CACHE_SIZE];
+
+    // Entries are immutable so racing readers see either an old or a new one, never a torn one
+    private static class DateEntry {
+        final int epochDay;
+        final char[] text;
+
+        DateEntry(int epochDay, char[] text) {
+            this.epochDay = epochDay;
+            this.text = text;
+        }
+    }
+
+    // Same layout as the data file: id,"description",amount,"category",type,date
+    public static StringBuilder appendCSV(StringBuilder out, int id, String description, long amount,
+                                          String category, Transaction.TransactionType type, int epochDay) {
+        out.append(id).append(',');
+        appendQuoted(out, description).append(',');
+        appendAmount(out, amount).append(',');
+        // Quoted like the description, so a category containing a comma reads back as one field
+        appendQuoted(out, category).append(',');
+        out.append(type.name()).append(',');
+        return appendDate(out, epochDay);
+    }
+
+    // Human-readable form used by the console listings
+    public static StringBuilder appendDisplay(StringBuilder out, int id, String description, long amount,
+                                              String category, Transaction.TransactionType type, int epochDay) {
+        out.append("ID: ").append(id);
+        out.append(" | Date: ");
+        appendDate(out, epochDay);
+        out.append(" | Type: ").append(type.name());
+        out.append(" | Amount: $");
+        appendAmount(out, amount);
+        out.append(" | Category: ").append(category);
+        return out.append(" | Description: ").append(description);
+    }
+
+    // Minor units (cents) as a plain decimal with two fraction digits, e.g. -1205 -> -12.05
+    public static StringBuilder appendAmount(StringBuilder out, long minorUnits) {
+        // Dividing before negating keeps Long.MIN_VALUE in range
+        long whole = Math.abs(minorUnits / 100);
+        long cents = Math.abs(minorUnits % 100);
+        if (minorUnits < 0) {
+            out.append('-');
+        }
+        out.append(whole).append('.');
+        if (cents < 10) {
+            out.append('0');
+        }
+        return out.append(cents);
+    }
+
+    public static StringBuilder appendDate(StringBuilder out, int epochDay) {
+        int index = epochDay & (DATE_CACHE_SIZE - 1);
+        DateEntry entry = DATE_CACHE[index];
+        if (entry == null || entry.epochDay != epochDay) {
+            entry = new DateEntry(epochDay, encodeDate(epochDay));
+            DATE_CACHE[index] = entry;
+        }
+        return out.append(entry.text);
+    }
+
+    // Wraps the value in quotes, doubling any embedded quote
+    public static StringBuilder appendQuoted(StringBuilder out, String value) {
+        out.append('"');
+        int start = 0;
+        int quote;
+        while ((quote = value.indexOf('"', start)) >= 0) {
+            out.append(value, start, quote + 1).append('"');
+            start = quote + 1;
+        }
+        return out.append(value, start, value.length()).append('"');
+    }
+
+    // JSON string literal, escaping quotes, backslashes and control characters
+    public static StringBuilder appendJson(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"');
+    }
+
+    private static char[] encodeDate(int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            return date.toString().toCharArray();
+        }
+        char[] text = new char[10];
+        text[0] = (char) ('0' + year / 1000);
+        text[1] = (char) ('0' + year / 100 % 10);
+        text[2] = (char) ('0' + year / 10 % 10);
+        text[3] = (char) ('0' + year % 10);
+        text[4] = '-';
+        text[5] = (char) ('0' + date.getMonthValue() / 10);
+        text[6] = (char) ('0' + date.getMonthValue() % 10);
+        text[7] = '-';
+        text[8] = (char) ('0' + date.getDayOfMonth() / 10);
+        text[9] = (char) ('0' + date.getDayOfMonth() % 10);
+        return text;
+    }
+}
@@ -0,0 +1,149 @@
+// TransactionJournal.java
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Append-only write-ahead journal of add/remove records.
+ * Each mutation costs one appended line instead of a full snapshot rewrite;
+ * the journal is replayed on startup and truncated after compaction.
+ * Records are rendered by the mutating thread and written by the tracker's
+ * PersistenceWriter, which is the only thread that touches the file.
+ */
+public class TransactionJournal {
+    private static final String ADD_RECORD = "A,";
+    private static final String REMOVE_RECORD = "R,";
+    
+    private final File file;
+    private FileOutputStream output;
+    private LineWriter writer;
+    private int recordCount;
+    
+    public TransactionJournal(String fileName) {
+        this.file = new File(fileName);
+    }
+    
+    public static String addRecord(Transaction transaction) {
+        StringBuilder record = new StringBuilder(96).append(ADD_RECORD);
+        transaction.appendCSV(record);
+        return record.toString();
+    }
+    
+    // A stored row's current state, straight from the store's columns
+    public static String addRecord(TransactionStore store, int slot) {
+        StringBuilder record = new StringBuilder(96).append(ADD_RECORD);
+        store.appendCSV(slot, record);
+        return record.toString();
+    }
+    
+    public static String removeRecord(int transactionId) {
+        return REMOVE_RECORD + transactionId;
+    }
+    
+    // Buffers one rendered record; flush() or sync() hands it to the OS
+    public void write(String record) throws IOException {
+        LineWriter out = openWriter();
+        out.line().append(record);
+        out.endLine();
+        recordCount++;
+    }
+    
+    // Number of records written since the last compaction
+    public int getRecordCount() {
+        return recordCount;
+    }
+    
+    /**
+     * Replays the journal in order. Torn or unreadable lines (e.g. from a crash
+     * mid-write) are skipped. Returns the number of records applied.
+     */
+    public int replay(Consumer<Transaction> onAdd, IntConsumer onRemove) {
+        if (!file.exists()) {
+            return 0;
+        }
+        
+        int applied = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                recordCount++;
+                if (line.startsWith(ADD_RECORD)) {
+                    Transaction transaction = Transaction.fromCSV(line.substring(ADD_RECORD.length()));
+                    if (transaction != null) {
+                        onAdd.accept(transaction);
+                        applied++;
+                    }
+                } else if (line.startsWith(REMOVE_RECORD)) {
+                    try {
+                        onRemove.accept(Integer.parseInt(line.substring(REMOVE_RECORD.length()).trim()));
+                        applied++;
+                    } catch (NumberFormatException e) {
+                        System.err.println("Skipping corrupt journal record: " + line);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error replaying journal: " + e.getMessage());
+        }
+        return applied;
+    }
+    
+    // Hands buffered records to the OS, so a process crash loses nothing
+    public void flush() throws IOException {
+        if (writer == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            writer.flush();
+        } finally {
+            TrackerMetrics.get().ioSince(start);
+        }
+    }
+    
+    // Forces buffered records to disk, so a power loss loses nothing either
+    public void sync() throws IOException {
+        if (writer == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            writer.flush();
+            output.getFD().sync();
+        } finally {
+            TrackerMetrics.get().ioSince(start);
+        }
+    }
+    
+    // Discards all records; called once their effects are in a durable snapshot
+    public void truncate() throws IOException {
+        close();
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to truncate journal " + file);
+        }
+        recordCount = 0;
+    }
+    
+    public void close() throws IOException {
+        if (writer != null) {
+            try {
+                sync();
+            } finally {
+                writer.close();
+                writer = null;
+                output = null;
+            }
+        }
+    }
+    
+    private LineWriter openWriter() throws IOException {
+        if (writer == null) {
+            output = new FileOutputStream(file, true);
+            writer = new LineWriter(new OutputStreamWriter(new TrackerMetrics.CountingOutputStream(output),
+                                                           StandardCharsets.UTF_8));
+        }
+        return writer;
+    }
+}
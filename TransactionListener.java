@@ -0,0 +1,15 @@
+// TransactionListener.java
+
+/**
+ * Notified when a transaction is edited through its setters, so the
+ * owning tracker can keep its stored copy, totals and indexes current.
+ * Each call comes with the new value before the transaction holds it; a
+ * listener that throws rejects the edit and the transaction is unchanged.
+ */
+public interface TransactionListener {
+    void amountChanged(Transaction transaction, Money amount);
+    
+    void descriptionChanged(Transaction transaction, String description);
+    
+    void categoryChanged(Transaction transaction, String category);
+}
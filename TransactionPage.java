@@ -0,0 +1,30 @@
+// TransactionPage.java
+import java.util.List;
+
+/**
+ * One page of a cursor-paged listing. Pass getNextCursor() back to fetch
+ * the following page.
+ */
+public class TransactionPage {
+    private final List<Transaction> transactions;
+    private final long nextCursor;
+    private final boolean hasMore;
+    
+    public TransactionPage(List<Transaction> transactions, long nextCursor, boolean hasMore) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+    
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+    
+    public long getNextCursor() {
+        return nextCursor;
+    }
+    
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
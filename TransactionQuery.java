@@ -0,0 +1,113 @@
+// TransactionQuery.java
+import java.time.LocalDate;
+
+/**
+ * Filters, order and paging for FinanceTracker.query(...) and page(...).
+ * Every filter is optional; setters return this so a query reads as one
+ * chained expression, e.g.
+ *   new TransactionQuery().type(EXPENSE).category("Food").between(from, to).limit(20)
+ */
+public class TransactionQuery {
+    public enum Order {
+        NEWEST_FIRST,
+        OLDEST_FIRST
+    }
+
+    private Transaction.TransactionType type;
+    private String category;
+    private LocalDate from;
+    private LocalDate to;
+    private Money minAmount;
+    private Money maxAmount;
+    private Order order = Order.NEWEST_FIRST;
+    private long offset;
+    private long limit = Long.MAX_VALUE;
+    private long cursor = DateIndex.FIRST_PAGE;
+
+    public TransactionQuery type(Transaction.TransactionType type) {
+        this.type = type;
+        return this;
+    }
+
+    // Exact category name, as stored
+    public TransactionQuery category(String category) {
+        this.category = category;
+        return this;
+    }
+
+    // Dates from..to inclusive; either end may be null for an open range
+    public TransactionQuery between(LocalDate from, LocalDate to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    // Amounts min..max inclusive; either end may be null for an open range
+    public TransactionQuery amountBetween(Money min, Money max) {
+        this.minAmount = min;
+        this.maxAmount = max;
+        return this;
+    }
+
+    public TransactionQuery order(Order order) {
+        this.order = order;
+        return this;
+    }
+
+    // Matching rows to skip before the first one returned
+    public TransactionQuery offset(long offset) {
+        this.offset = Math.max(offset, 0);
+        return this;
+    }
+
+    public TransactionQuery limit(long limit) {
+        this.limit = Math.max(limit, 0);
+        return this;
+    }
+
+    // Resume after a TransactionPage's next cursor; DateIndex.FIRST_PAGE starts from the top
+    public TransactionQuery after(long cursor) {
+        this.cursor = cursor;
+        return this;
+    }
+
+    public Transaction.TransactionType getType() {
+        return type;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public Money getMinAmount() {
+        return minAmount;
+    }
+
+    public Money getMaxAmount() {
+        return maxAmount;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    public long getCursor() {
+        return cursor;
+    }
+}
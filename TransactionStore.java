@@ -0,0 +1,246 @@
+// TransactionStore.java
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Columnar, primitive-backed storage for transactions.
+ * Each row lives in a slot across parallel arrays: ids, amounts in minor
+ * units (cents), epoch-day dates, type codes and dictionary-encoded
+ * category and description codes. Removed rows are tombstoned and the
+ * arrays are compacted once tombstones outnumber live rows.
+ * Per-type totals are maintained on every mutation so reads are O(1).
+ */
+public class TransactionStore {
+    public static final byte DELETED = -1;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final Transaction.TransactionType[] TYPES = Transaction.TransactionType.values();
+    
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    private int[] dates = new int[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] categories = new int[INITIAL_CAPACITY];
+    private int[] descriptions = new int[INITIAL_CAPACITY];
+    private StringDictionary categoryDictionary = new StringDictionary();
+    private StringDictionary descriptionDictionary = new StringDictionary();
+    private IdIndex slotById = new IdIndex();
+    private final long[] totalsByType = new long[TYPES.length];
+    private int slotCount;
+    private int liveCount;
+    
+    // Independent deep copy, trimmed to the slots in use
+    public TransactionStore copy() {
+        TransactionStore copy = new TransactionStore();
+        int capacity = Math.max(slotCount, 1);
+        copy.ids = Arrays.copyOf(ids, capacity);
+        copy.amounts = Arrays.copyOf(amounts, capacity);
+        copy.dates = Arrays.copyOf(dates, capacity);
+        copy.types = Arrays.copyOf(types, capacity);
+        copy.categories = Arrays.copyOf(categories, capacity);
+        copy.descriptions = Arrays.copyOf(descriptions, capacity);
+        copy.categoryDictionary = categoryDictionary.copy();
+        copy.descriptionDictionary = descriptionDictionary.copy();
+        copy.slotById = slotById.copy();
+        System.arraycopy(totalsByType, 0, copy.totalsByType, 0, totalsByType.length);
+        copy.slotCount = slotCount;
+        copy.liveCount = liveCount;
+        return copy;
+    }
+    
+    // Stores the transaction, replacing any existing row with the same id, and returns its slot
+    public int add(Transaction transaction) {
+        return addRow(transaction.getId(), transaction.getAmount().getMinorUnits(), 
+                      (int) transaction.getDate().toEpochDay(), (byte) transaction.getType().ordinal(),
+                      transaction.getCategory(), transaction.getDescription());
+    }
+    
+    // Primitive form of add, used by loaders that never build Transaction objects
+    public int addRow(int id, long amount, int epochDay, byte type, String category, String description) {
+        remove(id);
+        if (slotCount == ids.length) {
+            grow();
+        }
+        
+        int slot = slotCount++;
+        ids[slot] = id;
+        amounts[slot] = amount;
+        dates[slot] = epochDay;
+        types[slot] = type;
+        categories[slot] = categoryDictionary.acquire(category);
+        descriptions[slot] = descriptionDictionary.acquire(description);
+        slotById.put(id, slot);
+        totalsByType[type] += amount;
+        liveCount++;
+        return slot;
+    }
+    
+    public boolean remove(int id) {
+        int slot = slotById.remove(id);
+        if (slot < 0) {
+            return false;
+        }
+        
+        categoryDictionary.release(categories[slot]);
+        descriptionDictionary.release(descriptions[slot]);
+        totalsByType[types[slot]] -= amounts[slot];
+        types[slot] = DELETED;
+        liveCount--;
+        
+        if (slotCount - liveCount > Math.max(INITIAL_CAPACITY, liveCount)) {
+            compact();
+        }
+        return true;
+    }
+    
+    public void updateAmount(int slot, long minorUnits) {
+        totalsByType[types[slot]] += minorUnits - amounts[slot];
+        amounts[slot] = minorUnits;
+    }
+    
+    public void updateDescription(int slot, String description) {
+        int code = descriptionDictionary.acquire(description);
+        descriptionDictionary.release(descriptions[slot]);
+        descriptions[slot] = code;
+    }
+    
+    public void updateCategory(int slot, String category) {
+        int code = categoryDictionary.acquire(category);
+        categoryDictionary.release(categories[slot]);
+        categories[slot] = code;
+    }
+    
+    // Slot holding the given id, or -1
+    public int slotOf(int id) {
+        return slotById.get(id);
+    }
+    
+    public Transaction toTransaction(int slot) {
+        return new Transaction(ids[slot], descriptionAt(slot), Money.ofMinor(amounts[slot]),
+                               categoryAt(slot), typeAt(slot), LocalDate.ofEpochDay(dates[slot]));
+    }
+    
+    // Appends the slot's CSV row straight from the columns, without building a Transaction
+    public StringBuilder appendCSV(int slot, StringBuilder out) {
+        return TransactionFormat.appendCSV(out, ids[slot], descriptionAt(slot), amounts[slot],
+                                           categoryAt(slot), typeAt(slot), dates[slot]);
+    }
+    
+    public boolean isLive(int slot) {
+        return types[slot] != DELETED;
+    }
+    
+    // Slots range over [0, slotCount); some of them may be tombstones
+    public int slotCount() {
+        return slotCount;
+    }
+    
+    public int size() {
+        return liveCount;
+    }
+    
+    public int idAt(int slot) {
+        return ids[slot];
+    }
+    
+    public long amountAt(int slot) {
+        return amounts[slot];
+    }
+    
+    public int epochDayAt(int slot) {
+        return dates[slot];
+    }
+    
+    public byte typeCodeAt(int slot) {
+        return types[slot];
+    }
+    
+    public Transaction.TransactionType typeAt(int slot) {
+        return TYPES[types[slot]];
+    }
+    
+    public int categoryCodeAt(int slot) {
+        return categories[slot];
+    }
+    
+    public String categoryAt(int slot) {
+        return categoryDictionary.valueOf(categories[slot]);
+    }
+    
+    public int descriptionCodeAt(int slot) {
+        return descriptions[slot];
+    }
+    
+    public String descriptionAt(int slot) {
+        return descriptionDictionary.valueOf(descriptions[slot]);
+    }
+    
+    public StringDictionary getCategoryDictionary() {
+        return categoryDictionary;
+    }
+    
+    public StringDictionary getDescriptionDictionary() {
+        return descriptionDictionary;
+    }
+    
+    // Running total in minor units of all rows of the given type
+    public long totalOf(Transaction.TransactionType type) {
+        return totalsByType[type.ordinal()];
+    }
+    
+    // Recomputes every running total from the columns and reports whether they all agree
+    public boolean verifyTotals() {
+        boolean consistent = true;
+        for (Transaction.TransactionType type : TYPES) {
+            long expected = sumAmounts(type);
+            if (expected != totalsByType[type.ordinal()]) {
+                System.err.println("Running " + type + " total is " + totalsByType[type.ordinal()]
+                                   + " but rows sum to " + expected);
+                consistent = false;
+            }
+        }
+        return consistent;
+    }
+    
+    // Total in minor units of all rows of the given type, computed by a full scan
+    public long sumAmounts(Transaction.TransactionType type) {
+        byte code = (byte) type.ordinal();
+        long total = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (types[slot] == code) {
+                total += amounts[slot];
+            }
+        }
+        return total;
+    }
+    
+    // Squeezes out tombstones, keeping rows in insertion order
+    public void compact() {
+        int target = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (types[slot] == DELETED) {
+                continue;
+            }
+            if (target != slot) {
+                ids[target] = ids[slot];
+                amounts[target] = amounts[slot];
+                dates[target] = dates[slot];
+                types[target] = types[slot];
+                categories[target] = categories[slot];
+                descriptions[target] = descriptions[slot];
+                slotById.put(ids[target], target);
+            }
+            target++;
+        }
+        slotCount = target;
+    }
+    
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        dates = Arrays.copyOf(dates, capacity);
+        types = Arrays.copyOf(types, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+    }
+}
@@ -0,0 +1,327 @@
+// TrigramIndex.java
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Inverted trigram index over transaction descriptions and categories.
+ * Trigrams map to the dictionary codes of the distinct strings containing
+ * them, and each code maps to the ids of the rows using it, so repeated
+ * descriptions are indexed once. Removals are lazy: stale postings are
+ * filtered out at query time and purged by an amortized rebuild.
+ */
+public class TrigramIndex {
+    public enum MatchMode {
+        SUBSTRING,  // term appears anywhere
+        PREFIX      // some word starts with the term
+    }
+    
+    private static final int MIN_STALE_FOR_REBUILD = 1024;
+    private static final int RANK_LEVELS = 5;
+    
+    private final TransactionStore store;
+    private final FieldIndex descriptions = new FieldIndex();
+    private final FieldIndex categories = new FieldIndex();
+    private int staleEntries;
+    
+    public TrigramIndex(TransactionStore store) {
+        this.store = store;
+    }
+    
+    public void add(int slot) {
+        descriptions.add(store.descriptionCodeAt(slot), store.descriptionAt(slot), store.idAt(slot));
+        categories.add(store.categoryCodeAt(slot), store.categoryAt(slot), store.idAt(slot));
+    }
+    
+    // Postings are left in place and skipped at query time until the next rebuild
+    public void remove(int slot) {
+        staleEntries += 2;
+        if (staleEntries > Math.max(MIN_STALE_FOR_REBUILD, store.size() * 2)) {
+            rebuild();
+        }
+    }
+    
+    public void rebuild() {
+        descriptions.clear();
+        categories.clear();
+        staleEntries = 0;
+        for (int slot = 0; slot < store.slotCount(); slot++) {
+            if (store.isLive(slot)) {
+                add(slot);
+            }
+        }
+    }
+    
+    /**
+     * Slots of the rows matching a search, in slot order, with the rank of
+     * each: 1 substring, 2 word prefix, 3 field prefix, 4 exact.
+     */
+    public static final class Matches {
+        public final int[] slots;
+        public final byte[] ranks;
+        
+        Matches(int[] slots, byte[] ranks) {
+            this.slots = slots;
+            this.ranks = ranks;
+        }
+    }
+    
+    /**
+     * Returns the slots of rows whose description or category matches the
+     * lower-cased term. Unranked results come back in id order, the order the
+     * rows were created; ranked results put exact matches first, then field
+     * prefixes, word prefixes and other substrings, newest first within each
+     * level and then by id. Both orders depend only on the rows, not on where
+     * they sit in the store, so results merged from elsewhere can follow them.
+     */
+    public int[] search(String term, MatchMode mode, boolean ranked) {
+        Matches matches = match(term, mode);
+        return ranked ? rank(matches) : byId(matches.slots);
+    }
+    
+    // The matches in slot order with their ranks, for callers that merge them with other results
+    public Matches match(String term, MatchMode mode) {
+        int[] descriptionRanks = new int[store.getDescriptionDictionary().codeLimit()];
+        int[] categoryRanks = new int[store.getCategoryDictionary().codeLimit()];
+        IntList descriptionCodes = descriptions.matchCodes(term, mode, descriptionRanks);
+        IntList categoryCodes = categories.matchCodes(term, mode, categoryRanks);
+        
+        BitSet matches = new BitSet(store.slotCount());
+        descriptions.collectSlots(descriptionCodes, true, matches);
+        categories.collectSlots(categoryCodes, false, matches);
+        
+        int[] slots = new int[matches.cardinality()];
+        byte[] ranks = new byte[slots.length];
+        int count = 0;
+        for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+            ranks[count] = (byte) Math.max(rankOf(descriptionRanks, store.descriptionCodeAt(slot)),
+                                           rankOf(categoryRanks, store.categoryCodeAt(slot)));
+            slots[count++] = slot;
+        }
+        return new Matches(slots, ranks);
+    }
+    
+    /**
+     * Same matching as match() by a linear pass over a store that has no
+     * index, such as a month read from disk for one call. Each distinct
+     * string is lower-cased and checked once.
+     */
+    public static Matches scan(TransactionStore rows, String term, MatchMode mode) {
+        int[] descriptionRanks = new int[rows.getDescriptionDictionary().codeLimit()];
+        int[] categoryRanks = new int[rows.getCategoryDictionary().codeLimit()];
+        Arrays.fill(descriptionRanks, -1);
+        Arrays.fill(categoryRanks, -1);
+        
+        int[] slots = new int[rows.size()];
+        byte[] ranks = new byte[rows.size()];
+        int count = 0;
+        for (int slot = 0; slot < rows.slotCount(); slot++) {
+            if (!rows.isLive(slot)) {
+                continue;
+            }
+            int description = rows.descriptionCodeAt(slot);
+            if (descriptionRanks[description] < 0) {
+                descriptionRanks[description] = rankMatch(rows.descriptionAt(slot).toLowerCase(), term, mode);
+            }
+            int category = rows.categoryCodeAt(slot);
+            if (categoryRanks[category] < 0) {
+                categoryRanks[category] = rankMatch(rows.categoryAt(slot).toLowerCase(), term, mode);
+            }
+            int rank = Math.max(descriptionRanks[description], categoryRanks[category]);
+            if (rank > 0) {
+                ranks[count] = (byte) rank;
+                slots[count++] = slot;
+            }
+        }
+        return new Matches(Arrays.copyOf(slots, count), Arrays.copyOf(ranks, count));
+    }
+    
+    private int[] rank(Matches matches) {
+        long[][] levels = new long[RANK_LEVELS][];
+        int[] sizes = new int[RANK_LEVELS];
+        for (int i = 0; i < matches.slots.length; i++) {
+            int slot = matches.slots[i];
+            int level = matches.ranks[i];
+            if (levels[level] == null) {
+                levels[level] = new long[matches.slots.length];
+            }
+            levels[level][sizes[level]++] = DateIndex.key(store.epochDayAt(slot), store.idAt(slot));
+        }
+        
+        int[] result = new int[matches.slots.length];
+        int count = 0;
+        for (int level = RANK_LEVELS - 1; level >= 1; level--) {
+            if (levels[level] != null) {
+                Arrays.sort(levels[level], 0, sizes[level]);
+                for (int i = 0; i < sizes[level]; i++) {
+                    result[count++] = store.slotOf(DateIndex.idOf(levels[level][i]));
+                }
+            }
+        }
+        return result;
+    }
+    
+    private int[] byId(int[] slots) {
+        long[] keys = new long[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            keys[i] = ((long) store.idAt(slots[i]) << 32) | slots[i];
+        }
+        Arrays.sort(keys);
+        int[] result = new int[slots.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = (int) keys[i];
+        }
+        return result;
+    }
+    
+    private static int rankOf(int[] ranks, int code) {
+        return code < ranks.length ? ranks[code] : 0;
+    }
+    
+    // 0 = no match, 1 = substring, 2 = word prefix, 3 = field prefix, 4 = exact
+    private static int rankMatch(String value, String term, MatchMode mode) {
+        if (value.equals(term)) {
+            return 4;
+        }
+        if (value.startsWith(term)) {
+            return 3;
+        }
+        int index = value.indexOf(term);
+        if (index < 0) {
+            return 0;
+        }
+        while (index > 0) {
+            if (!Character.isLetterOrDigit(value.charAt(index - 1))) {
+                return 2;
+            }
+            index = value.indexOf(term, index + 1);
+        }
+        return mode == MatchMode.SUBSTRING ? 1 : 0;
+    }
+    
+    private static long trigram(String text, int index) {
+        return ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16) | text.charAt(index + 2);
+    }
+    
+    /**
+     * Index for one dictionary-encoded field.
+     */
+    private class FieldIndex {
+        private final Map<Long, IntList> codesByTrigram = new HashMap<>();
+        private String[] indexedValues = new String[16];   // exact value each code was indexed for
+        private String[] lowerValues = new String[16];
+        private IntList[] idsByCode = new IntList[16];
+        
+        void add(int code, String value, int id) {
+            ensureCapacity(code);
+            // Dictionary codes are recycled, so (re)index the text whenever the value behind a code changes
+            if (indexedValues[code] != value) {
+                indexedValues[code] = value;
+                String lower = value.toLowerCase();
+                lowerValues[code] = lower;
+                for (int i = 0; i + 3 <= lower.length(); i++) {
+                    codesByTrigram.computeIfAbsent(trigram(lower, i), key -> new IntList()).add(code);
+                }
+            }
+            if (idsByCode[code] == null) {
+                idsByCode[code] = new IntList();
+            }
+            idsByCode[code].add(id);
+        }
+        
+        void clear() {
+            codesByTrigram.clear();
+            Arrays.fill(indexedValues, null);
+            Arrays.fill(lowerValues, null);
+            Arrays.fill(idsByCode, null);
+        }
+        
+        /**
+         * Fills in the match rank of each matching code and returns those codes.
+         * Only strings containing the term's rarest trigram are checked.
+         */
+        IntList matchCodes(String term, MatchMode mode, int[] ranks) {
+            IntList matched = new IntList();
+            int limit = Math.min(ranks.length, lowerValues.length);
+            if (term.length() < 3) {
+                for (int code = 0; code < limit; code++) {
+                    check(code, term, mode, ranks, matched);
+                }
+                return matched;
+            }
+            
+            IntList candidates = null;
+            for (int i = 0; i + 3 <= term.length(); i++) {
+                IntList posting = codesByTrigram.get(trigram(term, i));
+                if (posting == null) {
+                    return matched;
+                }
+                if (candidates == null || posting.size < candidates.size) {
+                    candidates = posting;
+                }
+            }
+            for (int i = 0; i < candidates.size; i++) {
+                int code = candidates.values[i];
+                if (code < limit && ranks[code] == 0) {
+                    check(code, term, mode, ranks, matched);
+                }
+            }
+            return matched;
+        }
+        
+        private void check(int code, String term, MatchMode mode, int[] ranks, IntList matched) {
+            String lower = lowerValues[code];
+            int rank = lower != null ? rankMatch(lower, term, mode) : 0;
+            if (rank > 0) {
+                ranks[code] = rank;
+                matched.add(code);
+            }
+        }
+        
+        // Adds the slots of live rows that still carry one of the matched codes
+        void collectSlots(IntList codes, boolean descriptionField, BitSet slots) {
+            for (int c = 0; c < codes.size; c++) {
+                int code = codes.values[c];
+                IntList ids = idsByCode[code];
+                if (ids == null) {
+                    continue;
+                }
+                for (int i = 0; i < ids.size; i++) {
+                    int slot = store.slotOf(ids.values[i]);
+                    if (slot < 0) {
+                        continue;
+                    }
+                    int current = descriptionField ? store.descriptionCodeAt(slot) : store.categoryCodeAt(slot);
+                    if (current == code) {
+                        slots.set(slot);
+                    }
+                }
+            }
+        }
+        
+        private void ensureCapacity(int code) {
+            if (code >= indexedValues.length) {
+                int capacity = Math.max(indexedValues.length * 2, code + 1);
+                indexedValues = Arrays.copyOf(indexedValues, capacity);
+                lowerValues = Arrays.copyOf(lowerValues, capacity);
+                idsByCode = Arrays.copyOf(idsByCode, capacity);
+            }
+        }
+    }
+    
+    /**
+     * Growable int array used for postings.
+     */
+    private static class IntList {
+        int[] values = new int[4];
+        int size;
+        
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}